@@ -0,0 +1,110 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+/**
+ * A {@link FrameRatePolicy} that lowers the frame rate of looping animations when the device is
+ * saving power, when it is hot, or when frames are being advanced late because the UI thread is
+ * busy. The full frame rate is restored when conditions improve.
+ * <p/>
+ * The battery temperature is used to detect that the device is hot. Device conditions are
+ * checked at most every few seconds.
+ */
+public class AdaptiveFrameRatePolicy implements FrameRatePolicy {
+    public static final int DEFAULT_MAX_STRIDE = 3;
+
+    /**
+     * Battery temperatures, in tenths of a degree Celsius, above which the frame rate is lowered.
+     */
+    private static final int WARM_TEMPERATURE = 400;
+    private static final int HOT_TEMPERATURE = 450;
+
+    private static final long CONDITION_CHECK_INTERVAL = 5000;
+
+    /**
+     * The weight of each new measurement in the average frame lateness.
+     */
+    private static final float LATENESS_SMOOTHING = 0.1f;
+
+    private final Context mContext;
+    private final int mMaxStride;
+    private long mLastConditionCheck = -1;
+    private int mConditionStride = 1;
+    private float mAverageLateness = 0;
+
+    /**
+     * @param context A context used to read the power saving mode and the battery temperature.
+     */
+    public AdaptiveFrameRatePolicy(Context context) {
+        this(context, DEFAULT_MAX_STRIDE);
+    }
+
+    /**
+     * @param context   A context used to read the power saving mode and the battery temperature.
+     * @param maxStride The largest number of frames to advance at a time.
+     */
+    public AdaptiveFrameRatePolicy(Context context, int maxStride) {
+        if (maxStride < 1) {
+            throw new IllegalArgumentException("maxStride must be at least 1");
+        }
+        mContext = context.getApplicationContext();
+        mMaxStride = maxStride;
+    }
+
+    @Override
+    public synchronized int getFrameStride(int frameDuration) {
+        long now = SystemClock.uptimeMillis();
+        if (mLastConditionCheck < 0 || now - mLastConditionCheck >= CONDITION_CHECK_INTERVAL) {
+            mConditionStride = getConditionStride();
+            mLastConditionCheck = now;
+        }
+
+        int stride = mConditionStride;
+        if (frameDuration > 0) {
+            // When frames are consistently late, skip enough of them to catch up.
+            stride = Math.max(stride, 1 + (int) (mAverageLateness / frameDuration));
+        }
+        return Math.max(1, Math.min(mMaxStride, stride));
+    }
+
+    @Override
+    public synchronized void onFrameAdvanced(int frameDuration, long lateness) {
+        mAverageLateness += (lateness - mAverageLateness) * LATENESS_SMOOTHING;
+    }
+
+    /**
+     * Returns the stride for the current power saving mode and temperature.
+     */
+    private int getConditionStride() {
+        int stride = isPowerSaveMode() ? 2 : 1;
+        int temperature = getBatteryTemperature();
+        if (temperature >= HOT_TEMPERATURE) {
+            stride = Math.max(stride, 3);
+        } else if (temperature >= WARM_TEMPERATURE) {
+            stride = Math.max(stride, 2);
+        }
+        return stride;
+    }
+
+    @TargetApi(21)
+    private boolean isPowerSaveMode() {
+        if (Build.VERSION.SDK_INT < 21) return false;
+        PowerManager powerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
+    }
+
+    /**
+     * Returns the battery temperature in tenths of a degree Celsius, or 0 if it is unknown.
+     */
+    private int getBatteryTemperature() {
+        Intent battery = mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery == null ? 0 : battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+    }
+}
@@ -0,0 +1,35 @@
+package com.getkeepsafe.android.multistateanimation;
+
+/**
+ * Schedules the frames of animations played by a MultiStateAnimation.
+ * <p/>
+ * By default, frames are scheduled in real time by the View or {@link RenderTarget} that displays
+ * the animation. Setting a clock replaces that scheduling, which allows animations to be played
+ * without a display, or to be stepped faster than real time with a {@link VirtualAnimationClock}.
+ *
+ * @see MultiStateAnimation#setClock(AnimationClock)
+ */
+public interface AnimationClock {
+    /**
+     * Returns the current time of this clock, in milliseconds.
+     */
+    long uptimeMillis();
+
+    /**
+     * Run a callback at a given time.
+     *
+     * @param what  The callback to run.
+     * @param token An object that identifies the callback when it is unscheduled.
+     * @param when  The time, in the time base of {@link #uptimeMillis()}, to run the callback.
+     */
+    void schedule(Runnable what, Object token, long when);
+
+    /**
+     * Cancel a callback previously passed to {@link #schedule(Runnable, Object, long)}. Does
+     * nothing if the callback is not scheduled.
+     *
+     * @param what  The callback to cancel.
+     * @param token The token that the callback was scheduled with.
+     */
+    void unschedule(Runnable what, Object token);
+}
@@ -0,0 +1,131 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A {@link RenderTarget} that displays one animation as the background of any number of Views.
+ * <p/>
+ * All of the Views show the same frame of the same drawable. A MultiStateAnimation created with a
+ * group as its target only holds one set of frames and calls its listener once per change of
+ * state, no matter how many Views are in the group. Views can be added and removed at any time,
+ * such as when they are bound and recycled in a list. The group only holds weak references to
+ * its Views.
+ * <p/>
+ * Frames are advanced on the UI thread, and the group must only be used from the UI thread.
+ */
+public class AnimationGroup implements RenderTarget, Drawable.Callback {
+    private final Map<View, MirrorDrawable> mViews = new WeakHashMap<>();
+
+    /**
+     * The original layer types of views that use a software layer for the current drawable.
+     */
+    private final Map<View, Integer> mSavedLayerTypes = new WeakHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Drawable mDrawable;
+
+    /**
+     * Show the animation as the background of a view. Adding a view that is already in the group
+     * has no effect.
+     *
+     * @param view The view to add.
+     */
+    public void addView(View view) {
+        if (mViews.containsKey(view)) return;
+        MirrorDrawable mirror = new MirrorDrawable(mDrawable);
+        mViews.put(view, mirror);
+        if (mDrawable != null) {
+            updateLayerType(view);
+            ViewRenderTarget.setBackground(view, mirror);
+        }
+    }
+
+    /**
+     * Stop showing the animation on a view and clear its background.
+     *
+     * @param view The view to remove.
+     */
+    public void removeView(View view) {
+        if (mViews.remove(view) != null && mDrawable != null) {
+            ViewRenderTarget.setBackground(view, null);
+        }
+        Integer savedLayerType = mSavedLayerTypes.remove(view);
+        if (savedLayerType != null) {
+            ViewRenderTarget.updateLayerType(view, null, savedLayerType);
+        }
+    }
+
+    /**
+     * Returns the number of views in the group.
+     */
+    public int getViewCount() {
+        return mViews.size();
+    }
+
+    @Override
+    public void setDrawable(Drawable drawable) {
+        Drawable old = mDrawable;
+        if (old != null && old != drawable) {
+            old.setCallback(null);
+            mHandler.removeCallbacksAndMessages(old);
+        }
+        mDrawable = drawable;
+        if (drawable != null) {
+            drawable.setCallback(this);
+
+            // The mirrors scale the drawable from these bounds to the bounds of each view. A
+            // drawable without an intrinsic size takes the bounds of the first view that draws it.
+            int width = drawable.getIntrinsicWidth();
+            int height = drawable.getIntrinsicHeight();
+            if (width > 0 && height > 0) {
+                drawable.setBounds(0, 0, width, height);
+            }
+        }
+
+        for (Map.Entry<View, MirrorDrawable> entry : mViews.entrySet()) {
+            MirrorDrawable mirror = entry.getValue();
+            mirror.setSource(drawable);
+            updateLayerType(entry.getKey());
+            ViewRenderTarget.setBackground(entry.getKey(), drawable == null ? null : mirror);
+        }
+    }
+
+    private void updateLayerType(View view) {
+        Integer saved = mSavedLayerTypes.get(view);
+        int savedLayerType = ViewRenderTarget.updateLayerType(view, mDrawable,
+                saved == null ? ViewRenderTarget.NO_SAVED_LAYER_TYPE : saved);
+        if (savedLayerType == ViewRenderTarget.NO_SAVED_LAYER_TYPE) {
+            mSavedLayerTypes.remove(view);
+        } else {
+            mSavedLayerTypes.put(view, savedLayerType);
+        }
+    }
+
+    @Override
+    public void runOnRenderThread(Runnable action) {
+        ViewRenderTarget.runOnMainThread(action);
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        if (who != mDrawable) return;
+        for (MirrorDrawable mirror : mViews.values()) {
+            mirror.invalidateSelf();
+        }
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        mHandler.postAtTime(what, who, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        mHandler.removeCallbacks(what, who);
+    }
+}
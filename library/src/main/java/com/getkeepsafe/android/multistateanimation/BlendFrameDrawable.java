@@ -0,0 +1,92 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * A Drawable that draws a single frame of a crossfade between two other drawables.
+ * <p/>
+ * The outgoing frame fades out while scaling from its full size to fromScale, and the incoming
+ * frame fades in while scaling from toScale to its full size. The frames can be shared with
+ * other drawables, such as the outgoing section's animation, so their bounds aren't changed.
+ * Instead, the canvas is scaled from each frame's bounds to the bounds of this drawable. A frame
+ * that has no bounds yet is given this drawable's bounds, which doesn't invalidate it.
+ */
+class BlendFrameDrawable extends Drawable {
+    private final Drawable mFrom;
+    private final Drawable mTo;
+    private final float mProgress;
+    private final float mFromScale;
+    private final float mToScale;
+    private int mAlpha = 255;
+
+    /**
+     * @param from      The outgoing frame, or null to fade in from nothing.
+     * @param to        The incoming frame.
+     * @param progress  The position of this frame in the crossfade, between 0 and 1.
+     * @param fromScale The scale of the outgoing frame at the end of the crossfade.
+     * @param toScale   The scale of the incoming frame at the start of the crossfade.
+     */
+    public BlendFrameDrawable(Drawable from, Drawable to, float progress, float fromScale, float toScale) {
+        mFrom = from;
+        mTo = to;
+        mProgress = progress;
+        mFromScale = fromScale;
+        mToScale = toScale;
+    }
+
+    /**
+     * @return The incoming frame.
+     */
+    Drawable getTo() {
+        return mTo;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (mAlpha == 0 || bounds.isEmpty()) return;
+
+        drawFrame(canvas, bounds, mFrom, 1 - mProgress, 1 + (mFromScale - 1) * mProgress);
+        drawFrame(canvas, bounds, mTo, mProgress, mToScale + (1 - mToScale) * mProgress);
+    }
+
+    private void drawFrame(Canvas canvas, Rect bounds, Drawable frame, float opacity, float scale) {
+        int alpha = Math.round(mAlpha * opacity);
+        if (frame == null || alpha <= 0) return;
+
+        int saveCount = canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom,
+                alpha, Canvas.HAS_ALPHA_LAYER_SAVE_FLAG);
+        canvas.scale(scale, scale, bounds.exactCenterX(), bounds.exactCenterY());
+        Rect frameBounds = frame.getBounds();
+        if (frameBounds.isEmpty()) {
+            frame.setBounds(bounds);
+            frameBounds = frame.getBounds();
+        }
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale(bounds.width() / (float) frameBounds.width(),
+                bounds.height() / (float) frameBounds.height());
+        canvas.translate(-frameBounds.left, -frameBounds.top);
+        frame.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mAlpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        // The blended frames keep their own color filters.
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
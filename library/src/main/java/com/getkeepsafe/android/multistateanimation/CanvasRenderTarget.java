@@ -0,0 +1,112 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A {@link RenderTarget} for code that draws its own Canvas, such as a custom View's onDraw or a
+ * game loop that already renders to a Surface.
+ * <p/>
+ * The target doesn't draw anything by itself. Instead, its listener is told when the animation
+ * has a new frame, and the owner calls {@link #draw(Canvas, Rect)} the next time it draws.
+ * Frames are advanced on the thread of the target's Looper, and draw must be called on that
+ * thread.
+ */
+public class CanvasRenderTarget implements RenderTarget, Drawable.Callback {
+    /**
+     * Called when the current frame of a CanvasRenderTarget changes.
+     */
+    public interface OnInvalidateListener {
+        /**
+         * Called on the target's thread when the frame returned by draw has changed.
+         *
+         * @param target The target that needs to be drawn.
+         */
+        void onInvalidate(CanvasRenderTarget target);
+    }
+
+    private final Handler mHandler;
+    private final OnInvalidateListener mListener;
+    private Drawable mDrawable;
+
+    /**
+     * Create a target that advances frames on the current thread, which must have a Looper.
+     *
+     * @param listener Called when a new frame should be drawn.
+     */
+    public CanvasRenderTarget(OnInvalidateListener listener) {
+        this(Looper.myLooper(), listener);
+    }
+
+    /**
+     * @param looper   The looper of the thread that advances and draws frames.
+     * @param listener Called when a new frame should be drawn.
+     */
+    public CanvasRenderTarget(Looper looper, OnInvalidateListener listener) {
+        if (looper == null) {
+            throw new IllegalArgumentException("CanvasRenderTarget requires a Looper");
+        }
+        mHandler = new Handler(looper);
+        mListener = listener;
+    }
+
+    /**
+     * Draw the current frame of the animation. Does nothing if no animation is playing.
+     *
+     * @param canvas The canvas to draw to.
+     * @param bounds The area of the canvas that the frame will be scaled to fill.
+     */
+    public void draw(Canvas canvas, Rect bounds) {
+        Drawable drawable = mDrawable;
+        if (drawable == null) return;
+        drawable.setBounds(bounds);
+        drawable.draw(canvas);
+    }
+
+    @Override
+    public void setDrawable(Drawable drawable) {
+        Drawable old = mDrawable;
+        if (old != null && old != drawable) {
+            old.setCallback(null);
+            mHandler.removeCallbacksAndMessages(old);
+        }
+        mDrawable = drawable;
+        if (drawable != null) {
+            drawable.setCallback(this);
+        }
+        if (mListener != null) {
+            mListener.onInvalidate(this);
+        }
+    }
+
+    @Override
+    public void runOnRenderThread(Runnable action) {
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            action.run();
+        } else {
+            mHandler.post(action);
+        }
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        if (who == mDrawable && mListener != null) {
+            mListener.onInvalidate(this);
+        }
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        if (who == mDrawable) {
+            mHandler.postAtTime(what, who, when);
+        }
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        mHandler.removeCallbacks(what, who);
+    }
+}
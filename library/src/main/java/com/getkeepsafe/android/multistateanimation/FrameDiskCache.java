@@ -0,0 +1,387 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A persistent cache of decoded animation frames.
+ * <p/>
+ * The first time a frame is loaded, its image resource is decoded normally and the raw pixels are
+ * written to the application's cache directory. Later loads, including loads in future processes,
+ * memory-map the stored pixels instead of inflating the compressed image again.
+ * <p/>
+ * Entries are keyed by resource id, screen density, and decode config. Every entry also records
+ * the version of the installed application, and entries written by a different version are
+ * discarded, since resource ids may change between builds. Since resources can only be removed by
+ * installing a new version, this also discards the entries of removed resources.
+ * <p/>
+ * Recently used frames are also kept in memory, so sections that are loaded again don't read
+ * their files. Both the memory and the files on disk are limited to a maximum size, and the least
+ * recently used entries are removed first.
+ * <p/>
+ * Only resources that decode to a bitmap are cached. Other drawables, such as XML drawables, are
+ * loaded through Resources as usual.
+ *
+ * @see MultiStateAnimation.Builder#setFrameDiskCache(FrameDiskCache)
+ */
+public class FrameDiskCache {
+    private static final String DIRECTORY_NAME = "multistateanimation_frames";
+    private static final int MAGIC = 0x4d534131; // "MSA1"
+
+    /**
+     * Size of the entry header: magic, version stamp, width, height, density, and config.
+     */
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 4 + 4;
+
+    private static final Bitmap.Config DECODE_CONFIG = Bitmap.Config.ARGB_8888;
+
+    public static final long DEFAULT_MAX_DISK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Temporary files older than this were left behind by a process that died while writing.
+     */
+    private static final long STALE_TEMP_FILE_AGE = 60 * 60 * 1000;
+
+    private final File mDirectory;
+    private final long mVersionStamp;
+    private final String mFilePrefix;
+    private final long mMaxDiskSize;
+    private final long mMaxMemorySize;
+
+    /**
+     * Recently used bitmaps, in order from least to most recently used.
+     */
+    private final LinkedHashMap<String, Bitmap> mMemoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMemorySize = 0;
+
+    /**
+     * The total size of the files in the directory, or -1 if the directory hasn't been pruned yet.
+     */
+    private long mDiskSize = -1;
+
+    /**
+     * @param context A context used to find the cache directory and the installed app version.
+     */
+    public FrameDiskCache(Context context) {
+        this(context, new File(context.getCacheDir(), DIRECTORY_NAME));
+    }
+
+    /**
+     * @param context   A context used to find the installed app version.
+     * @param directory The directory that cached frames will be stored in.
+     */
+    public FrameDiskCache(Context context, File directory) {
+        this(context, directory, DEFAULT_MAX_DISK_SIZE, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * @param context       A context used to find the installed app version.
+     * @param directory     The directory that cached frames will be stored in. Files in this
+     *                      directory that weren't written by this version of the app are deleted.
+     * @param maxDiskSize   The maximum number of bytes of frames to store in the directory.
+     * @param maxMemorySize The maximum number of bytes of frames to keep in memory. Pass 0 to only
+     *                      cache frames on disk.
+     */
+    public FrameDiskCache(Context context, File directory, long maxDiskSize, long maxMemorySize) {
+        if (maxDiskSize < 0 || maxMemorySize < 0) {
+            throw new IllegalArgumentException("Cache sizes must not be negative");
+        }
+        mDirectory = directory;
+        mVersionStamp = getVersionStamp(context);
+        mFilePrefix = Long.toHexString(mVersionStamp) + "_";
+        mMaxDiskSize = maxDiskSize;
+        mMaxMemorySize = maxMemorySize;
+    }
+
+    /**
+     * Returns a value that changes whenever a new version of the app is installed.
+     */
+    private static long getVersionStamp(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            long stamp = info.versionCode;
+            if (Build.VERSION.SDK_INT >= 9) {
+                // Catch reinstalls of development builds that don't change the version code.
+                stamp = stamp * 31 + info.lastUpdateTime;
+            }
+            return stamp;
+        } catch (PackageManager.NameNotFoundException ignored) {
+            return 0;
+        }
+    }
+
+    /**
+     * Load a frame, using the cached pixels if a valid entry exists.
+     *
+     * @param resources The resources to load the frame from.
+     * @param resid     The resource id of the frame.
+     * @return The frame drawable.
+     */
+    public Drawable getDrawable(Resources resources, int resid) {
+        String name = getFileName(resources, resid);
+
+        Bitmap bitmap = getFromMemory(name);
+        if (bitmap == null) {
+            File file = new File(mDirectory, name);
+            bitmap = read(file);
+            if (bitmap == null) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inPreferredConfig = DECODE_CONFIG;
+                bitmap = BitmapFactory.decodeResource(resources, resid, options);
+                if (bitmap == null || bitmap.getConfig() == null) {
+                    return resources.getDrawable(resid);
+                }
+                write(file, bitmap);
+            } else {
+                // Keep track of which files were used recently.
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(System.currentTimeMillis());
+            }
+            putInMemory(name, bitmap);
+        }
+        // The bitmap is shared with the memory cache, so it must never be recycled.
+        return new BitmapDrawable(resources, bitmap);
+    }
+
+    /**
+     * Delete all cached frames, both in memory and on disk.
+     */
+    public void clear() {
+        synchronized (this) {
+            mMemoryCache.clear();
+            mMemorySize = 0;
+            mDiskSize = 0;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Remove all frames from memory. Frames stored on disk are kept.
+     */
+    public synchronized void trimMemory() {
+        mMemoryCache.clear();
+        mMemorySize = 0;
+    }
+
+    /**
+     * Returns the name of an entry's file. Names start with the version stamp so that entries
+     * from other versions of the app can be pruned without opening them.
+     */
+    private String getFileName(Resources resources, int resid) {
+        return mFilePrefix + Integer.toHexString(resid) + "_" +
+                resources.getDisplayMetrics().densityDpi + "_" +
+                DECODE_CONFIG.name();
+    }
+
+    private synchronized Bitmap getFromMemory(String name) {
+        return mMemoryCache.get(name);
+    }
+
+    private synchronized void putInMemory(String name, Bitmap bitmap) {
+        long size = getByteCount(bitmap);
+        if (size > mMaxMemorySize) return;
+
+        Bitmap old = mMemoryCache.put(name, bitmap);
+        if (old != null) {
+            mMemorySize -= getByteCount(old);
+        }
+        mMemorySize += size;
+
+        Iterator<Bitmap> iterator = mMemoryCache.values().iterator();
+        while (mMemorySize > mMaxMemorySize && iterator.hasNext()) {
+            mMemorySize -= getByteCount(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static long getByteCount(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Read a cached bitmap.
+     *
+     * @return The bitmap, or null if the file does not exist or is not valid for this version of the app.
+     */
+    private Bitmap read(File file) {
+        if (!file.isFile()) return null;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < HEADER_SIZE ||
+                    buffer.getInt() != MAGIC ||
+                    buffer.getLong() != mVersionStamp) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                return null;
+            }
+
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int density = buffer.getInt();
+            int configOrdinal = buffer.getInt();
+            Bitmap.Config[] configs = Bitmap.Config.values();
+            if (configOrdinal < 0 || configOrdinal >= configs.length) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                return null;
+            }
+
+            Bitmap bitmap = Bitmap.createBitmap(width, height, configs[configOrdinal]);
+            if (buffer.remaining() < bitmap.getRowBytes() * height) {
+                bitmap.recycle();
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                return null;
+            }
+            bitmap.copyPixelsFromBuffer(buffer);
+            bitmap.setDensity(density);
+            return bitmap;
+        } catch (IOException ignored) {
+            // The cache is only an optimization, fall back to decoding the resource.
+            return null;
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Write a bitmap to the cache. The entry is written to a temporary file first so that
+     * concurrent readers never see a partial entry.
+     */
+    private void write(File file, Bitmap bitmap) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) return;
+
+        File tmp = new File(mDirectory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bitmap.getRowBytes() * bitmap.getHeight());
+            buffer.putInt(MAGIC)
+                    .putLong(mVersionStamp)
+                    .putInt(bitmap.getWidth())
+                    .putInt(bitmap.getHeight())
+                    .putInt(bitmap.getDensity())
+                    .putInt(bitmap.getConfig().ordinal());
+            bitmap.copyPixelsToBuffer(buffer);
+
+            out = new FileOutputStream(tmp);
+            out.write(buffer.array(), 0, buffer.position());
+            out.close();
+            out = null;
+
+            if (tmp.renameTo(file)) {
+                onFileWritten(file.length());
+            } else {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+            }
+        } catch (IOException ignored) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Update the size of the directory after an entry is written, and delete the least recently
+     * used files if it's too large. The first time this is called, files from other versions of
+     * the app are deleted.
+     */
+    private void onFileWritten(long length) {
+        synchronized (this) {
+            if (mDiskSize >= 0) {
+                mDiskSize += length;
+                if (mDiskSize <= mMaxDiskSize) return;
+            }
+        }
+        prune();
+    }
+
+    private void prune() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+
+        long size = 0;
+        int count = 0;
+        long staleTime = System.currentTimeMillis() - STALE_TEMP_FILE_AGE;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                // Temporary files are only deleted once they're old, since they might be in the
+                // middle of being written.
+                if (file.lastModified() < staleTime) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            } else if (name.startsWith(mFilePrefix)) {
+                files[count++] = file;
+                size += file.length();
+            } else {
+                // An entry from another version of the app.
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+
+        if (size > mMaxDiskSize) {
+            File[] entries = new File[count];
+            System.arraycopy(files, 0, entries, 0, count);
+            Arrays.sort(entries, new Comparator<File>() {
+                @Override
+                public int compare(File lhs, File rhs) {
+                    long l = lhs.lastModified();
+                    long r = rhs.lastModified();
+                    return l < r ? -1 : (l == r ? 0 : 1);
+                }
+            });
+            for (int i = 0; i < entries.length && size > mMaxDiskSize; i++) {
+                long length = entries[i].length();
+                if (entries[i].delete()) {
+                    size -= length;
+                }
+            }
+        }
+
+        synchronized (this) {
+            mDiskSize = size;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
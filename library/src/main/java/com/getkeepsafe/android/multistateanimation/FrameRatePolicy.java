@@ -0,0 +1,29 @@
+package com.getkeepsafe.android.multistateanimation;
+
+/**
+ * Decides how many frames a looping animation advances at a time.
+ * <p/>
+ * A stride of 1 plays every frame. A stride of 2 shows every other frame for twice as long, which
+ * halves the work of drawing the animation without changing how long each loop takes. The last
+ * frame of a loop is never skipped, and oneshot animations always play every frame.
+ *
+ * @see AdaptiveFrameRatePolicy
+ * @see MultiStateAnimation#setFrameRatePolicy(FrameRatePolicy)
+ */
+public interface FrameRatePolicy {
+    /**
+     * Returns the number of frames to advance at a time. Called at the start of each loop.
+     *
+     * @param frameDuration The number of milliseconds that each frame plays at full rate.
+     */
+    int getFrameStride(int frameDuration);
+
+    /**
+     * Called each time an animation advances to its next frame.
+     *
+     * @param frameDuration The number of milliseconds that each frame plays at full rate.
+     * @param lateness      The number of milliseconds after its scheduled time that the frame was
+     *                      advanced.
+     */
+    void onFrameAdvanced(int frameDuration, long lateness);
+}
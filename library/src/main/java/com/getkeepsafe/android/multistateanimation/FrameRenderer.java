@@ -0,0 +1,30 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Draws the frames of a procedural animation section.
+ * <p/>
+ * A procedural section has no image resources. Instead, each frame is drawn on demand by a
+ * FrameRenderer, so the section holds no decoded bitmaps. Procedural sections are played with the
+ * same rules as any other section, and can be mixed freely with sections made of image frames.
+ * <p/>
+ * A renderer passed to a builder is shared by every animation built from it, and animations shown
+ * on a {@link SurfaceRenderTarget} draw on their own threads. Renderers must be safe to draw from
+ * more than one thread at a time.
+ *
+ * @see MultiStateAnimation.SectionBuilder#setRenderer(FrameRenderer, int)
+ * @see MultiStateAnimation.TransitionBuilder#setRenderer(FrameRenderer, int)
+ */
+public interface FrameRenderer {
+    /**
+     * Draw a single frame of the animation.
+     *
+     * @param canvas   The canvas to draw to.
+     * @param bounds   The area of the canvas that the frame should fill.
+     * @param progress The position of the frame in the animation, in the range [0, 1). For looping
+     *                 sections, a progress of 1 would be identical to a progress of 0.
+     */
+    void draw(Canvas canvas, Rect bounds, float progress);
+}
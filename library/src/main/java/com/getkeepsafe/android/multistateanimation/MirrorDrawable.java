@@ -0,0 +1,88 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * A Drawable that draws another drawable at its own bounds.
+ * <p/>
+ * Several mirrors can show the same source drawable in different Views. The source is not
+ * modified by drawing. Instead, the canvas is scaled from the bounds of the source to the bounds
+ * of the mirror, since changing the bounds of the source would invalidate every other mirror and
+ * cause them to redraw each other forever.
+ * <p/>
+ * The owner of the source should give it fixed bounds. If the source has no bounds when it is
+ * first drawn, it is given the bounds of that mirror.
+ */
+class MirrorDrawable extends Drawable {
+    private Drawable mSource;
+    private int mAlpha = 255;
+
+    /**
+     * @param source The drawable to draw, or null to draw nothing.
+     */
+    public MirrorDrawable(Drawable source) {
+        mSource = source;
+    }
+
+    public void setSource(Drawable source) {
+        mSource = source;
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (mSource == null || mAlpha == 0 || bounds.isEmpty()) return;
+
+        Rect sourceBounds = mSource.getBounds();
+        if (sourceBounds.isEmpty()) {
+            // Setting the bounds of a drawable that had none doesn't invalidate it.
+            mSource.setBounds(bounds);
+            sourceBounds = mSource.getBounds();
+        }
+
+        int saveCount;
+        if (mAlpha < 255) {
+            saveCount = canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom,
+                    mAlpha, Canvas.HAS_ALPHA_LAYER_SAVE_FLAG);
+        } else {
+            saveCount = canvas.save();
+        }
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale(bounds.width() / (float) sourceBounds.width(),
+                bounds.height() / (float) sourceBounds.height());
+        canvas.translate(-sourceBounds.left, -sourceBounds.top);
+        mSource.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mSource == null ? -1 : mSource.getIntrinsicWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mSource == null ? -1 : mSource.getIntrinsicHeight();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mAlpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        // The source is shared with other mirrors, so its color filter can't be changed.
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
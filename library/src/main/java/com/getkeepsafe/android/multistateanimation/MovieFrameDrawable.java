@@ -0,0 +1,74 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Movie;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * A Drawable that draws a single point in time of an animated image.
+ * <p/>
+ * Every frame of an animated image section shares the same Movie, so the image is only read once,
+ * and frames are decoded on demand as they are drawn instead of being held as separate bitmaps.
+ * <p/>
+ * Note that Movie can't draw to a hardware accelerated Canvas on some versions of Android. Views
+ * that display animated image sections may need to use a software layer.
+ */
+class MovieFrameDrawable extends Drawable {
+    private final Movie mMovie;
+    private final int mTime;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * @param movie The animated image to draw.
+     * @param time  The time, in milliseconds from the start of the movie, of the frame to draw.
+     */
+    public MovieFrameDrawable(Movie movie, int time) {
+        mMovie = movie;
+        mTime = time;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty() || mMovie.width() <= 0 || mMovie.height() <= 0) return;
+
+        mMovie.setTime(mTime);
+
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale(bounds.width() / (float) mMovie.width(), bounds.height() / (float) mMovie.height());
+        mMovie.draw(canvas, 0, 0, mPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mMovie.width();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mMovie.height();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return mMovie.isOpaque() && mPaint.getAlpha() == 255 ? PixelFormat.OPAQUE : PixelFormat.TRANSLUCENT;
+    }
+}
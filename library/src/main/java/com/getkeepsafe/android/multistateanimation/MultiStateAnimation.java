@@ -2,7 +2,15 @@ package com.getkeepsafe.android.multistateanimation;
 
 import android.annotation.TargetApi;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Color;
+import android.graphics.Movie;
+import android.graphics.Rect;
 import android.graphics.drawable.AnimationDrawable;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.view.View;
 
@@ -10,21 +18,30 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Animates a series of separate AnimationDrawables on the background of a single View.
- * The view to animate is passed in the constructor. Animations are added with addSection, or they
- * can be defined in a JSON resource and passed to fromJsonResource. To start an animation,
- * call transitionNow or queueTransition.
+ * Animates a series of separate AnimationDrawables on the background of a single View, or on
+ * another {@link RenderTarget}. The view to animate is passed in the constructor. Animations are
+ * added with addSection, or they can be defined in a JSON resource and passed to fromJsonResource.
+ * To start an animation, call transitionNow or queueTransition.
+ * <p/>
+ * The state of an instance may be changed from any thread, so animations can be driven from the
+ * render thread of a {@link SurfaceRenderTarget}. Drawables are only started, stopped, and
+ * attached on the thread of the target that shows them, and frames are decoded without holding
+ * the instance's lock.
  *
  * @author AJ Alt
  */
@@ -33,18 +50,67 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
     public static final boolean DEFAULT_ONESHOT_STATUS = true;
 
     /**
-     * Cache to prevent duplicate json reads; map of resource id -> builder.
+     * Cache to prevent duplicate json reads; map of resource id -> builder. The builders don't hold
+     * a target or a context, so the cache doesn't keep any Views or Activities alive. Access is
+     * synchronized on the map.
      */
     private static final Map<Integer, Builder> mBuilderCache = new HashMap<>();
 
+    /**
+     * The order in which the frames of a section or transition are played.
+     */
+    public enum PlaybackMode {
+        /**
+         * Play frames in the order they were added.
+         */
+        FORWARD,
+        /**
+         * Play frames from last to first.
+         */
+        REVERSE,
+        /**
+         * Play frames from first to last, then back to the first. A looping section doesn't
+         * repeat the first or last frame at the turning points.
+         */
+        PING_PONG;
+
+        /**
+         * Returns the mode that plays frames in the opposite order of this one.
+         */
+        public PlaybackMode reverse() {
+            switch (this) {
+                case FORWARD:
+                    return REVERSE;
+                case REVERSE:
+                    return FORWARD;
+                default:
+                    return this;
+            }
+        }
+    }
+
     /**
      * A class that creates an AnimationDrawable from a list of frames.
      */
-    private static class AnimationDrawableLoader {
-        private int mFrameDuration;
-        private boolean mIsOneShot;
-        private int[] mFrameIds;
-        private Context mContext;
+    private static class AnimationDrawableLoader implements ParallelFrameDecoder.FrameLoader {
+        protected int mFrameDuration;
+        protected boolean mIsOneShot;
+        protected int[] mFrameIds;
+        protected Context mContext;
+        protected PlaybackMode mPlaybackMode = PlaybackMode.FORWARD;
+
+        /**
+         * For frames with cropped transparent borders, the area of the full frame that each
+         * frame covers. Null, or null for each frame that isn't cropped.
+         */
+        protected Rect[] mFrameRects;
+        protected int mCanvasWidth;
+        protected int mCanvasHeight;
+
+        /**
+         * If not null, frames will be loaded through this cache instead of directly from resources.
+         */
+        protected FrameDiskCache mFrameCache;
 
         public AnimationDrawableLoader(Context context) {
             mContext = context;
@@ -68,56 +134,394 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
             mFrameIds = frameIds;
         }
 
-        public NotifyingAnimationDrawable load() {
+        public AnimationDrawableLoader(Context context, int frameDuration, boolean isOneShot, int[] frameIds, FrameDiskCache frameCache) {
+            this(context, frameDuration, isOneShot, frameIds);
+            mFrameCache = frameCache;
+        }
+
+        /**
+         * Create a drawable with every frame of this animation.
+         *
+         * @param decoder If not null, frames will be decoded in parallel with this decoder.
+         */
+        public NotifyingAnimationDrawable load(ParallelFrameDecoder decoder) {
             NotifyingAnimationDrawable d = new NotifyingAnimationDrawable();
             d.setOneShot(mIsOneShot);
 
             // XXX: AnimationDrawable has a bug that causes it to be unresponsive
             // if exactly one frame is added. A workaround is to add the same frame
             // twice if there's only one.
-            if (mFrameIds.length == 1) {
+            int frameCount = getFrameCount();
+            if (frameCount == 1) {
                 for (int i = 0; i < 2; i++) {
-                    d.addFrame(mContext.getResources().getDrawable(mFrameIds[0]), mFrameDuration);
+                    d.addFrame(loadFrame(0), mFrameDuration);
                 }
                 d.setOneShot(true);
             } else {
-                for (int resid : mFrameIds) {
-                    d.addFrame(mContext.getResources().getDrawable(resid), mFrameDuration);
+                Drawable[] frames;
+                if (decoder != null && canLoadInParallel()) {
+                    frames = decoder.loadFrames(this, frameCount);
+                } else {
+                    frames = new Drawable[frameCount];
+                    for (int i = 0; i < frameCount; i++) {
+                        frames[i] = loadFrame(i);
+                    }
+                }
+
+                // Each frame is only loaded once. Frames that play more than once share the
+                // decoded image of the first copy.
+                boolean[] added = new boolean[frameCount];
+                for (int index : getPlaybackOrder()) {
+                    d.addFrame(added[index] ? copyFrame(frames[index], index) : frames[index], mFrameDuration);
+                    added[index] = true;
                 }
             }
             return d;
         }
 
+        /**
+         * Returns the index of each frame to play, in order.
+         */
+        protected int[] getPlaybackOrder() {
+            int frameCount = getFrameCount();
+            int[] order;
+            if (frameCount > 1 && mPlaybackMode == PlaybackMode.PING_PONG) {
+                // When looping, the first frame plays again when the loop restarts.
+                order = new int[mIsOneShot ? 2 * frameCount - 1 : 2 * frameCount - 2];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i < frameCount ? i : 2 * (frameCount - 1) - i;
+                }
+            } else {
+                order = new int[frameCount];
+                for (int i = 0; i < frameCount; i++) {
+                    order[i] = mPlaybackMode == PlaybackMode.REVERSE ? frameCount - 1 - i : i;
+                }
+            }
+            return order;
+        }
+
+        /**
+         * Change this loader to play its animation in the opposite direction.
+         */
+        protected void reverse() {
+            mPlaybackMode = mPlaybackMode.reverse();
+        }
+
+        /**
+         * Create another drawable for a frame that is played more than once.
+         */
+        private Drawable copyFrame(Drawable frame, int index) {
+            Drawable.ConstantState state = frame.getConstantState();
+            if (state != null) {
+                return state.newDrawable(mContext.getResources());
+            }
+            return loadFrame(index);
+        }
+
+        /**
+         * Returns the number of frames in this animation.
+         */
+        protected int getFrameCount() {
+            return mFrameIds.length;
+        }
+
+        /**
+         * Returns true if frames can be loaded on several threads at once. Only frames decoded
+         * from image resources are worth loading in parallel.
+         */
+        protected boolean canLoadInParallel() {
+            return true;
+        }
+
+        /**
+         * Load a single frame, from the disk cache if one is set.
+         *
+         * @param index The index of the frame to load.
+         */
+        @Override
+        public Drawable loadFrame(int index) {
+            int resid = mFrameIds[index];
+            Drawable frame;
+            if (mFrameCache != null) {
+                frame = mFrameCache.getDrawable(mContext.getResources(), resid);
+            } else {
+                frame = mContext.getResources().getDrawable(resid);
+            }
+            if (mFrameRects != null && mFrameRects[index] != null) {
+                return new TrimmedFrameDrawable(frame, mFrameRects[index], mCanvasWidth, mCanvasHeight);
+            }
+            return frame;
+        }
+
         /**
          * Returns the duration of this animation.
          *
          * @return int number of milliseconds that the animation will play.
          */
         public int totalDuration() {
-            return mFrameDuration * mFrameIds.length;
+            return mFrameDuration * getPlaybackOrder().length;
+        }
+    }
+
+    /**
+     * A loader that creates an AnimationDrawable with frames drawn by a FrameRenderer.
+     * <p/>
+     * No images are decoded; each frame only holds its position in the animation.
+     */
+    private static class ProceduralDrawableLoader extends AnimationDrawableLoader {
+        private FrameRenderer mRenderer;
+        private int mFrameCount;
+
+        public ProceduralDrawableLoader(Context context, int frameDuration, boolean isOneShot,
+                                        FrameRenderer renderer, int frameCount) {
+            super(context, frameDuration, isOneShot, new int[0]);
+            mRenderer = renderer;
+            mFrameCount = frameCount;
+        }
+
+        @Override
+        protected int getFrameCount() {
+            return mFrameCount;
+        }
+
+        @Override
+        protected boolean canLoadInParallel() {
+            return false;
+        }
+
+        @Override
+        public Drawable loadFrame(int index) {
+            return new ProceduralFrameDrawable(mRenderer, index / (float) mFrameCount);
+        }
+    }
+
+    /**
+     * A loader that creates an AnimationDrawable from a single animated image resource.
+     * <p/>
+     * The image is read once and shared between every drawable this loader creates. Frames are
+     * sampled from the image every frameDuration milliseconds, and are decoded as they are drawn.
+     */
+    private static class MovieDrawableLoader extends AnimationDrawableLoader {
+        private int mMovieResId;
+        private Movie mMovie;
+
+        public MovieDrawableLoader(Context context, int frameDuration, boolean isOneShot, int movieResId) {
+            super(context, Math.max(1, frameDuration), isOneShot, new int[0]);
+            mMovieResId = movieResId;
+        }
+
+        private synchronized Movie getMovie() {
+            if (mMovie == null) {
+                InputStream is = new BufferedInputStream(mContext.getResources().openRawResource(mMovieResId));
+                try {
+                    mMovie = Movie.decodeStream(is);
+                } finally {
+                    closeQuietly(is);
+                }
+                if (mMovie == null) {
+                    throw new RuntimeException("Cannot decode animated image resource");
+                }
+            }
+            return mMovie;
+        }
+
+        @Override
+        protected int getFrameCount() {
+            int duration = getMovie().duration();
+            return Math.max(1, (duration + mFrameDuration - 1) / mFrameDuration);
+        }
+
+        @Override
+        protected boolean canLoadInParallel() {
+            return false;
+        }
+
+        @Override
+        public NotifyingAnimationDrawable load(ParallelFrameDecoder decoder) {
+            NotifyingAnimationDrawable d = super.load(decoder);
+            d.setRequiresSoftwareLayer(true);
+            return d;
+        }
+
+        @Override
+        public Drawable loadFrame(int index) {
+            return new MovieFrameDrawable(getMovie(), index * mFrameDuration);
+        }
+    }
+
+    /**
+     * A loader that creates an AnimationDrawable from a single image resource that holds every
+     * frame side by side, from left to right.
+     * <p/>
+     * Unlike an animated GIF, the strip can be a PNG with a full alpha channel. Each frame is
+     * decoded separately from its region of the image, so the whole strip is never decoded at once.
+     */
+    private static class SpriteStripDrawableLoader extends AnimationDrawableLoader {
+        private int mStripResId;
+        private int mFrameCount;
+        private BitmapRegionDecoder mRegionDecoder;
+
+        public SpriteStripDrawableLoader(Context context, int frameDuration, boolean isOneShot,
+                                         int stripResId, int frameCount) {
+            super(context, frameDuration, isOneShot, new int[0]);
+            mStripResId = stripResId;
+            mFrameCount = frameCount;
+        }
+
+        @Override
+        protected int getFrameCount() {
+            return mFrameCount;
+        }
+
+        @Override
+        protected boolean canLoadInParallel() {
+            // BitmapRegionDecoder only decodes one region at a time.
+            return false;
+        }
+
+        @Override
+        @TargetApi(10)
+        public synchronized Drawable loadFrame(int index) {
+            Bitmap frame;
+            if (Build.VERSION.SDK_INT >= 10) {
+                if (mRegionDecoder == null) {
+                    InputStream is = mContext.getResources().openRawResource(mStripResId);
+                    try {
+                        mRegionDecoder = BitmapRegionDecoder.newInstance(is, false);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Cannot decode sprite strip resource", e);
+                    } finally {
+                        closeQuietly(is);
+                    }
+                }
+                frame = mRegionDecoder.decodeRegion(getFrameRect(index,
+                        mRegionDecoder.getWidth(), mRegionDecoder.getHeight()), null);
+            } else {
+                InputStream is = new BufferedInputStream(mContext.getResources().openRawResource(mStripResId));
+                try {
+                    Bitmap strip = BitmapFactory.decodeStream(is, null, null);
+                    if (strip == null) {
+                        throw new RuntimeException("Cannot decode sprite strip resource");
+                    }
+                    Rect rect = getFrameRect(index, strip.getWidth(), strip.getHeight());
+                    frame = Bitmap.createBitmap(strip, rect.left, rect.top, rect.width(), rect.height());
+                } finally {
+                    closeQuietly(is);
+                }
+            }
+            if (frame == null) {
+                throw new RuntimeException("Cannot decode sprite strip resource");
+            }
+            return new BitmapDrawable(mContext.getResources(), frame);
+        }
+
+        private Rect getFrameRect(int index, int stripWidth, int stripHeight) {
+            int frameWidth = stripWidth / mFrameCount;
+            return new Rect(index * frameWidth, 0, (index + 1) * frameWidth, stripHeight);
+        }
+    }
+
+    /**
+     * A loader for a transition that crossfades between the frame that was showing when the
+     * transition started and the first frame of the section being transitioned to.
+     * <p/>
+     * The transition has no frames of its own. The only frame it loads is the first frame of the
+     * section being transitioned to, and every frame of the crossfade draws the same two drawables.
+     */
+    private static class BlendDrawableLoader extends AnimationDrawableLoader {
+        private int mFrameCount;
+        private float mFromScale;
+        private float mToScale;
+        private Drawable mFrom;
+        private Drawable mTo;
+
+        public BlendDrawableLoader(Context context, int frameDuration, int frameCount, float fromScale, float toScale) {
+            super(context, frameDuration, true, new int[0]);
+            mFrameCount = frameCount;
+            mFromScale = fromScale;
+            mToScale = toScale;
+        }
+
+        /**
+         * Create the crossfade animation.
+         *
+         * @param from      The frame to fade out, or null to fade in from nothing. If this is a frame
+         *                  of another crossfade, the frame that crossfade fades to is used instead,
+         *                  so that interrupted crossfades don't nest.
+         * @param toSection The loader of the section to fade in.
+         */
+        public synchronized NotifyingAnimationDrawable load(Drawable from, AnimationDrawableLoader toSection) {
+            while (from instanceof BlendFrameDrawable) {
+                from = ((BlendFrameDrawable) from).getTo();
+            }
+            mFrom = from;
+            mTo = toSection.loadFrame(toSection.getPlaybackOrder()[0]);
+            try {
+                NotifyingAnimationDrawable d = load((ParallelFrameDecoder) null);
+                d.setRequiresSoftwareLayer(mFrom instanceof MovieFrameDrawable || mTo instanceof MovieFrameDrawable);
+                return d;
+            } finally {
+                mFrom = null;
+                mTo = null;
+            }
+        }
+
+        @Override
+        protected int getFrameCount() {
+            return mFrameCount;
+        }
+
+        @Override
+        protected boolean canLoadInParallel() {
+            return false;
+        }
+
+        @Override
+        public Drawable loadFrame(int index) {
+            // Neither end of the crossfade is shown by itself, since the frames before and after
+            // the transition already show them.
+            float progress = (index + 1) / (float) (mFrameCount + 1);
+            return new BlendFrameDrawable(mFrom, mTo, progress, mFromScale, mToScale);
+        }
+
+        /**
+         * The reverse of a crossfade is a crossfade with the scales swapped.
+         */
+        @Override
+        protected void reverse() {
+            float fromScale = mFromScale;
+            mFromScale = mToScale;
+            mToScale = fromScale;
         }
     }
 
     /**
      * A class that holds loaders for a single animation section and transitions to that section.
+     * <p/>
+     * Transition loaders are only created the first time they are needed.
      */
     private static class AnimationSection {
         private String mId;
         private AnimationDrawableLoader mLoader;
-        private Map<String, AnimationDrawableLoader> mTransitions;
-
-        public AnimationSection(String id, AnimationDrawableLoader loader, Map<String, AnimationDrawableLoader> transitions) {
-            mId = id;
-            mLoader = loader;
-            mTransitions = transitions;
-        }
+        private Map<String, AnimationDrawableLoader> mTransitions = new HashMap<>();
+        private Map<String, TransitionBuilder> mTransitionBuilders;
+        private Context mContext;
+        private FrameDiskCache mFrameCache;
 
         /**
-         * @param id     The id of this section.
-         * @param loader A loader for this section's primary animation.
+         * @param id          The id of this section.
+         * @param loader      A loader for this section's primary animation.
+         * @param transitions Builders for the transitions to this section, keyed by the id they transition from.
+         * @param context     A context used to load transitions.
+         * @param frameCache  The cache to load transition frames through, or null.
          */
-        public AnimationSection(String id, AnimationDrawableLoader loader) {
-            this(id, loader, new HashMap<String, AnimationDrawableLoader>());
+        public AnimationSection(String id, AnimationDrawableLoader loader, Map<String, TransitionBuilder> transitions,
+                                Context context, FrameDiskCache frameCache) {
+            mId = id;
+            mLoader = loader;
+            mTransitionBuilders = new HashMap<>(transitions);
+            mContext = context;
+            mFrameCache = frameCache;
         }
 
         public String getId() {
@@ -126,53 +530,60 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
 
         /**
          * Creates the primary animation drawable for this section.
+         *
+         * @param decoder If not null, frames will be decoded in parallel with this decoder.
          */
-        public NotifyingAnimationDrawable loadDrawable() {
-            return mLoader.load();
+        public NotifyingAnimationDrawable loadDrawable(ParallelFrameDecoder decoder) {
+            return mLoader.load(decoder);
         }
 
         /**
-         * @param fromId The id of the section to transition from.
-         * @return The transition animation for fromId if one has been added, or null.
+         * Creates a transition animation drawable. This doesn't use any state of the section that
+         * can change, so it can be called without holding the animation's lock.
+         *
+         * @param loader    The loader returned by getTransitionLoader.
+         * @param fromFrame The frame showing when the transition starts, or null if there is none.
+         * @param decoder   If not null, frames will be decoded in parallel with this decoder.
          */
-        public NotifyingAnimationDrawable getTransition(String fromId) {
-            if (mTransitions.containsKey(fromId)) {
-                return mTransitions.get(fromId).load();
+        public NotifyingAnimationDrawable loadTransition(AnimationDrawableLoader loader, Drawable fromFrame,
+                                                         ParallelFrameDecoder decoder) {
+            if (loader instanceof BlendDrawableLoader) {
+                return ((BlendDrawableLoader) loader).load(fromFrame, mLoader);
             }
-            return null;
+            return loader.load(decoder);
         }
 
         /**
-         * @param fromId The Id of the section that will be transitioned from.
-         * @param loader The loader for this transition animation.
+         * @param fromId The id of the section to transition from.
+         * @return The loader for the transition from fromId, or null if there is no such transition.
          */
-        public void addTransition(String fromId, AnimationDrawableLoader loader) {
-            mTransitions.put(fromId, loader);
+        public AnimationDrawableLoader getTransitionLoader(String fromId) {
+            AnimationDrawableLoader loader = mTransitions.get(fromId);
+            if (loader == null) {
+                TransitionBuilder builder = mTransitionBuilders.remove(fromId);
+                if (builder != null) {
+                    loader = builder.build(mContext, mFrameCache);
+                    mTransitions.put(fromId, loader);
+                }
+            }
+            return loader;
         }
 
         /**
-         * Calculates the total duration if the animation, including the transition.
+         * Calculates the total duration if the animation, including the transition. This
+         * may decode an animated image to find its length, so it should be called without holding
+         * the animation's lock.
          *
-         * @param fromId If a transition exists from this id, the duration will include the transition duration.
+         * @param transition The loader returned by getTransitionLoader, or null to exclude the transition.
          * @return int number of milliseconds.
          */
-        public int getDuration(String fromId) {
+        public int getDuration(AnimationDrawableLoader transition) {
             int total = mLoader.totalDuration();
-            AnimationDrawableLoader loader = mTransitions.get(fromId);
-            if (loader != null) {
-                total += loader.totalDuration();
+            if (transition != null) {
+                total += transition.totalDuration();
             }
             return total;
         }
-
-        /**
-         * Calculates the duration of the animation, excluding any transition.
-         *
-         * @return int number of milliseconds.
-         */
-        public int getDuration() {
-            return getDuration(null);
-        }
     }
 
 
@@ -199,26 +610,107 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
     private String mQueuedSectionId;
     private NotifyingAnimationDrawable mCurrentDrawable;
 
+    /**
+     * The section whose own frames mCurrentDrawable plays, or null if it plays a transition.
+     * While the next drawable is loading, mCurrentSection already refers to the next section, but
+     * this still refers to the section of the drawable that is playing.
+     */
+    private AnimationSection mCurrentDrawableSection;
+
     /**
      * The id of the previous section if a transition is currently playing, or null
      * id no transition is playing.
      */
     private String mTransitioningFromId;
-    private View mView;
+
+    /**
+     * The target that displays the animations, or null if animations are displayed by a listener.
+     */
+    private RenderTarget mTarget;
+
+    /**
+     * The clock that schedules frames, or null if frames are scheduled by the target.
+     */
+    private AnimationClock mClock;
 
     /**
      * An array of resource IDs corresponding to animations that can be played.
      */
     private Map<String, AnimationSection> mSectionsById;
 
+    /**
+     * Sections that have not been played yet. Each is built the first time it is played, then
+     * moved to mSectionsById.
+     */
+    private Map<String, SectionBuilder> mSectionBuilders;
+
+    /**
+     * The context and frame cache used to build sections.
+     */
+    private Context mContext;
+    private FrameDiskCache mFrameCache;
+
+    /**
+     * If not null, section frames are decoded in parallel with this decoder.
+     */
+    private ParallelFrameDecoder mFrameDecoder;
+
+    /**
+     * If not null, decides how many frames looping sections skip.
+     */
+    private FrameRatePolicy mFrameRatePolicy;
+
+    /**
+     * Values of mPendingStartFrame that aren't frame indices.
+     */
+    private static final int NO_PENDING_START = -1;
+    private static final int RESUME_CURRENT_FRAME = -2;
+
+    /**
+     * The frame that the current drawable should start from the next time the target's thread
+     * updates it, RESUME_CURRENT_FRAME to continue from the frame it is showing, or
+     * NO_PENDING_START if it doesn't need to be started.
+     */
+    private int mPendingStartFrame = NO_PENDING_START;
+
+    /**
+     * The target and drawable as last updated on the target's thread. These lag behind mTarget
+     * and mCurrentDrawable until the posted updates run.
+     */
+    private RenderTarget mAttachedTarget;
+    private NotifyingAnimationDrawable mAttachedDrawable;
+
+    /**
+     * Incremented whenever the current drawable is replaced, so that a drawable that finished
+     * loading after the state changed again is discarded.
+     */
+    private int mGeneration = 0;
+
     /**
      * Create a new instance and automatically set animations as the background of the given view.
      *
      * @param view If not null, animations will be set as the background of this view.
      */
     public MultiStateAnimation(View view) {
+        this(view == null ? null : new ViewRenderTarget(view));
+    }
+
+    private MultiStateAnimation(RenderTarget target) {
         mSectionsById = new HashMap<>();
-        mView = view;
+        mSectionBuilders = new HashMap<>();
+        mTarget = target;
+    }
+
+    /**
+     * Create a new instance that displays animations on a render target.
+     * <p/>
+     * This is a factory method instead of a constructor so that passing null to the View
+     * constructor isn't ambiguous.
+     *
+     * @param target If not null, animations will be displayed by this target.
+     */
+    public static MultiStateAnimation withTarget(RenderTarget target) {
+        return new MultiStateAnimation(target);
     }
 
     /**
@@ -232,7 +724,7 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * @see com.getkeepsafe.android.multistateanimation.MultiStateAnimation.AnimationSeriesListener#onAnimationStarting()
      */
     public MultiStateAnimation() {
-        this(null);
+        this((RenderTarget) null);
     }
 
     /**
@@ -242,6 +734,20 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
         return context.getResources().getIdentifier(name, "drawable", context.getPackageName());
     }
 
+    /**
+     * Load the id for a raw resource from its name
+     */
+    private static int getRawResourceId(Context context, String name) {
+        return context.getResources().getIdentifier(name, "raw", context.getPackageName());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
     /**
      * Convert a JSONArray containing only strings to a String[].
      *
@@ -272,14 +778,238 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
         return array;
     }
 
+    /**
+     * The frames of a section or transition, shared by SectionBuilder and TransitionBuilder.
+     * <p/>
+     * Frames come from exactly one of a list of image resources, an animated image, a sprite
+     * strip, or a renderer.
+     */
+    private static class FrameSource {
+        private List<Integer> mFrames = new ArrayList<>();
+        private List<Rect> mFrameRects = new ArrayList<>();
+        private int mCanvasWidth = 0;
+        private int mCanvasHeight = 0;
+        private int mAnimatedImage = 0;
+        private int mSpriteStrip = 0;
+        private int mSpriteStripFrameCount = 0;
+        private FrameRenderer mRenderer = null;
+        private int mRendererFrameCount = 0;
+
+        /**
+         * The definition of a renderer from JSON. Builders from JSON are cached and shared, so a
+         * new renderer is created for each loader instead of sharing one between animations that
+         * may draw on different threads.
+         */
+        private String mRendererJson = null;
+
+        public void addFrame(int imageResource) {
+            mFrames.add(imageResource);
+            mFrameRects.add(null);
+        }
+
+        public void addFrame(int imageResource, int x, int y, int width, int height) {
+            mFrames.add(imageResource);
+            mFrameRects.add(new Rect(x, y, x + width, y + height));
+        }
+
+        public void addFrames(int[] imageResources) {
+            for (int imageResource : imageResources) {
+                addFrame(imageResource);
+            }
+        }
+
+        public void setCanvasSize(int width, int height) {
+            if (width < 1 || height < 1) {
+                throw new IllegalArgumentException("Canvas size must be positive");
+            }
+            mCanvasWidth = width;
+            mCanvasHeight = height;
+        }
+
+        public void setAnimatedImage(int rawResource) {
+            mAnimatedImage = rawResource;
+            mSpriteStrip = 0;
+            mRenderer = null;
+            mRendererJson = null;
+        }
+
+        public void setSpriteStrip(int rawResource, int frameCount) {
+            if (frameCount < 1) {
+                throw new IllegalArgumentException("Sprite strips must have at least one frame");
+            }
+            mSpriteStrip = rawResource;
+            mSpriteStripFrameCount = frameCount;
+            mAnimatedImage = 0;
+            mRenderer = null;
+            mRendererJson = null;
+        }
+
+        public void setRenderer(FrameRenderer renderer, int frameCount) {
+            if (frameCount < 1) {
+                throw new IllegalArgumentException("Procedural animations must have at least one frame");
+            }
+            mRenderer = renderer;
+            mRendererFrameCount = frameCount;
+            mRendererJson = null;
+            mAnimatedImage = 0;
+            mSpriteStrip = 0;
+        }
+
+        /**
+         * Set the frames from the "frames", "animated_image", "sprite_strip", or "procedural" key
+         * of a JSON section or transition.
+         */
+        public void setFromJson(Context context, JSONObject obj) throws JSONException {
+            if (obj.has("procedural")) {
+                JSONObject procedural = obj.getJSONObject("procedural");
+                // Check the definition now, so a bad file fails when it's first parsed.
+                checkRendererJson(context, procedural);
+                setRenderer(null, procedural.getInt("frame_count"));
+                mRendererJson = procedural.toString();
+            } else if (obj.has("animated_image")) {
+                setAnimatedImage(getRawResourceId(context, obj.getString("animated_image")));
+            } else if (obj.has("sprite_strip")) {
+                JSONObject strip = obj.getJSONObject("sprite_strip");
+                setSpriteStrip(getRawResourceId(context, strip.getString("image")), strip.getInt("frame_count"));
+            } else {
+                if (obj.has("canvas_width")) {
+                    setCanvasSize(obj.getInt("canvas_width"), obj.getInt("canvas_height"));
+                }
+
+                // Each frame is either a resource name, or an object describing a cropped frame
+                JSONArray frames = obj.getJSONArray("frames");
+                for (int i = 0; i < frames.length(); i++) {
+                    JSONObject frame = frames.optJSONObject(i);
+                    if (frame == null) {
+                        addFrame(getDrawableResourceId(context, frames.getString(i)));
+                    } else {
+                        if (mCanvasWidth == 0) {
+                            throw new JSONException("Cropped frames require canvas_width and canvas_height");
+                        }
+                        addFrame(getDrawableResourceId(context, frame.getString("name")),
+                                frame.getInt("x"), frame.getInt("y"),
+                                frame.getInt("width"), frame.getInt("height"));
+                    }
+                }
+            }
+        }
+
+        public AnimationDrawableLoader createLoader(Context context, int frameDuration, boolean isOneShot,
+                                                    PlaybackMode playbackMode, FrameDiskCache frameCache) {
+            AnimationDrawableLoader loader;
+            if (mRendererJson != null) {
+                FrameRenderer renderer;
+                try {
+                    renderer = rendererFromJson(context, new JSONObject(mRendererJson));
+                } catch (JSONException ignored) {
+                    throw new RuntimeException("Invalid sync animation JSON file format.");
+                }
+                loader = new ProceduralDrawableLoader(context, frameDuration, isOneShot, renderer, mRendererFrameCount);
+            } else if (mRenderer != null) {
+                loader = new ProceduralDrawableLoader(context, frameDuration, isOneShot, mRenderer, mRendererFrameCount);
+            } else if (mAnimatedImage != 0) {
+                loader = new MovieDrawableLoader(context, frameDuration, isOneShot, mAnimatedImage);
+            } else if (mSpriteStrip != 0) {
+                loader = new SpriteStripDrawableLoader(context, frameDuration, isOneShot, mSpriteStrip, mSpriteStripFrameCount);
+            } else {
+                loader = new AnimationDrawableLoader(context, frameDuration, isOneShot, integerListToArray(mFrames), frameCache);
+                if (mCanvasWidth > 0) {
+                    loader.mFrameRects = mFrameRects.toArray(new Rect[mFrameRects.size()]);
+                    loader.mCanvasWidth = mCanvasWidth;
+                    loader.mCanvasHeight = mCanvasHeight;
+                } else if (Collections.frequency(mFrameRects, null) < mFrameRects.size()) {
+                    throw new IllegalStateException("Cropped frames require a canvas size");
+                }
+            }
+            loader.mPlaybackMode = playbackMode;
+            return loader;
+        }
+    }
+
+    /**
+     * Parse the optional "playback" key of a JSON section or transition.
+     */
+    private static PlaybackMode playbackModeFromJson(JSONObject obj) throws JSONException {
+        String playback = obj.optString("playback", "forward");
+        switch (playback) {
+            case "forward":
+                return PlaybackMode.FORWARD;
+            case "reverse":
+                return PlaybackMode.REVERSE;
+            case "ping_pong":
+                return PlaybackMode.PING_PONG;
+            default:
+                throw new JSONException("Unknown playback mode: " + playback);
+        }
+    }
+
+    /**
+     * Check the JSON definition of a renderer without creating it. Nothing is decoded, so a
+     * "rotate" drawable is only looked up by name.
+     */
+    private static void checkRendererJson(Context context, JSONObject obj) throws JSONException {
+        String type = obj.getString("type");
+        switch (type) {
+            case "spinner":
+            case "pulse":
+                Color.parseColor(obj.getString("color"));
+                break;
+            case "rotate":
+                String drawable = obj.getString("drawable");
+                if (getDrawableResourceId(context, drawable) == 0) {
+                    throw new JSONException("Unknown drawable resource: " + drawable);
+                }
+                break;
+            default:
+                throw new JSONException("Unknown procedural animation type: " + type);
+        }
+    }
+
+    /**
+     * Create a renderer from its JSON definition.
+     */
+    private static FrameRenderer rendererFromJson(Context context, JSONObject obj) throws JSONException {
+        String type = obj.getString("type");
+        switch (type) {
+            case "spinner":
+                return new SpinnerRenderer(Color.parseColor(obj.getString("color")));
+            case "pulse":
+                return new PulseRenderer(Color.parseColor(obj.getString("color")));
+            case "rotate":
+                return new RotationRenderer(context.getResources().getDrawable(
+                        getDrawableResourceId(context, obj.getString("drawable"))));
+            default:
+                throw new JSONException("Unknown procedural animation type: " + type);
+        }
+    }
+
     /**
      * A Builder for a transition from one section to another.
      * <p/>
      * It's possible to use the same transition between more than one set of sections.
      */
     public static class TransitionBuilder {
-        private List<Integer> mFrames = new ArrayList<>();
+        private FrameSource mFrames = new FrameSource();
         private int mFrameDuration = DEFAULT_FRAME_DURATION;
+        private PlaybackMode mPlaybackMode = PlaybackMode.FORWARD;
+        private int mCrossfadeFrameCount = 0;
+        private float mCrossfadeFromScale = 1;
+        private float mCrossfadeToScale = 1;
+
+        /**
+         * If not null, this transition plays the frames of this other transition in reverse, and
+         * its own settings are unused. Only set for the transitions that a section creates from a
+         * {@link ReversedTransition}.
+         */
+        private final TransitionBuilder mReverseOf;
+
+        public TransitionBuilder() {
+            mReverseOf = null;
+        }
+
+        private TransitionBuilder(ReversedTransition reversed) {
+            mReverseOf = reversed.mSource;
+        }
 
         /**
          * Add a frame to the transition animation.
@@ -288,7 +1018,47 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
          * @return This Builder object to allow for chaining of calls to set methods
          */
         public TransitionBuilder addFrame(int imageResource) {
-            mFrames.add(imageResource);
+            mFrames.addFrame(imageResource);
+            return this;
+        }
+
+        /**
+         * Add several frames to the transition animation.
+         *
+         * @param imageResources The resource ids of image drawables, in the order they will be played.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder addFrames(int... imageResources) {
+            mFrames.addFrames(imageResources);
+            return this;
+        }
+
+        /**
+         * Add a frame whose transparent borders have been cropped off. The frame will be drawn at
+         * its original position in the full frame. The canvas size must also be set with
+         * {@link #setCanvasSize(int, int)}.
+         *
+         * @param imageResource The resource id of the cropped image drawable.
+         * @param x             The left edge of the cropped image in the full frame, in pixels.
+         * @param y             The top edge of the cropped image in the full frame, in pixels.
+         * @param width         The width of the cropped image, in pixels.
+         * @param height        The height of the cropped image, in pixels.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder addFrame(int imageResource, int x, int y, int width, int height) {
+            mFrames.addFrame(imageResource, x, y, width, height);
+            return this;
+        }
+
+        /**
+         * Set the size of the full frames of this transition, before any transparent borders were cropped.
+         *
+         * @param width  The width of the full frames, in pixels.
+         * @param height The height of the full frames, in pixels.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setCanvasSize(int width, int height) {
+            mFrames.setCanvasSize(width, height);
             return this;
         }
 
@@ -303,8 +1073,183 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
             return this;
         }
 
-        private AnimationDrawableLoader build(Context context) {
-            return new AnimationDrawableLoader(context, mFrameDuration, true, integerListToArray(mFrames));
+        /**
+         * Play an animated image instead of a list of frames. Any frames added with addFrame will
+         * be ignored.
+         * <p/>
+         * GIFs only have 256 colors and 1-bit transparency, and Views showing them use a software
+         * layer. Use {@link #setSpriteStrip(int, int)} for frames with soft edges.
+         *
+         * @param rawResource The resource id of a raw animated GIF. Frames of the image will be
+         *                    displayed every frameDuration milliseconds.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setAnimatedImage(int rawResource) {
+            mFrames.setAnimatedImage(rawResource);
+            return this;
+        }
+
+        /**
+         * Play frames from a sprite strip instead of a list of frames: a single image that holds
+         * every frame side by side, from left to right. Unlike an animated GIF, the strip can be a
+         * PNG with a full alpha channel. Any frames added with addFrame will be ignored.
+         *
+         * @param rawResource The resource id of the raw strip image. Its width must be a multiple of
+         *                    the frame count.
+         * @param frameCount  The number of frames in the strip. Each frame will be displayed for
+         *                    frameDuration milliseconds.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setSpriteStrip(int rawResource, int frameCount) {
+            mFrames.setSpriteStrip(rawResource, frameCount);
+            return this;
+        }
+
+        /**
+         * Draw frames procedurally instead of using a list of image frames. Any frames added
+         * with addFrame will be ignored.
+         *
+         * @param renderer   The renderer that will draw each frame.
+         * @param frameCount The number of frames in the animation. Each frame will be displayed
+         *                   for frameDuration milliseconds.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setRenderer(FrameRenderer renderer, int frameCount) {
+            mFrames.setRenderer(renderer, frameCount);
+            return this;
+        }
+
+        /**
+         * Set the order in which the frames of this transition are played. This is ignored for a
+         * crossfade, which always ends on the first frame of the new section.
+         *
+         * @param playbackMode The playback mode. The default is {@link PlaybackMode#FORWARD}.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setPlaybackMode(PlaybackMode playbackMode) {
+            mPlaybackMode = playbackMode;
+            return this;
+        }
+
+        /**
+         * Crossfade from the frame that is showing when the transition starts to the first frame
+         * of the new section, instead of playing a list of frames. Any frames added with addFrame,
+         * and the playback mode, will be ignored.
+         *
+         * @param frameCount The number of frames in the crossfade. Each frame will be displayed
+         *                   for frameDuration milliseconds.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setCrossfade(int frameCount) {
+            return setCrossfade(frameCount, 1, 1);
+        }
+
+        /**
+         * Crossfade from the frame that is showing when the transition starts to the first frame
+         * of the new section, while scaling both frames. Any frames added with addFrame, and the
+         * playback mode, will be ignored.
+         *
+         * @param frameCount The number of frames in the crossfade. Each frame will be displayed
+         *                   for frameDuration milliseconds.
+         * @param fromScale  The scale that the outgoing frame reaches as it fades out.
+         * @param toScale    The scale that the incoming frame starts at as it fades in.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public TransitionBuilder setCrossfade(int frameCount, float fromScale, float toScale) {
+            if (frameCount < 1) {
+                throw new IllegalArgumentException("Crossfades must have at least one frame");
+            }
+            mCrossfadeFrameCount = frameCount;
+            mCrossfadeFromScale = fromScale;
+            mCrossfadeToScale = toScale;
+            return this;
+        }
+
+        /**
+         * Create a transition that plays the frames of this transition in the opposite order.
+         * <p/>
+         * This allows a transition from section A to section B to be reused as the transition
+         * from B to A. Both transitions use the same frame resources, so their decoded images
+         * are shared. Later changes to this builder also apply to the reversed transition.
+         *
+         * @return A transition to pass to {@link SectionBuilder#addTransition(String, ReversedTransition)}.
+         */
+        public ReversedTransition reversed() {
+            return new ReversedTransition(this);
+        }
+
+        AnimationDrawableLoader build(Context context, FrameDiskCache frameCache) {
+            if (mReverseOf != null) {
+                AnimationDrawableLoader loader = mReverseOf.build(context, frameCache);
+                loader.reverse();
+                return loader;
+            }
+            if (mCrossfadeFrameCount > 0) {
+                // Playing a crossfade in any other order would end on the outgoing frame, and then
+                // jump to the new section.
+                return new BlendDrawableLoader(context, mFrameDuration, mCrossfadeFrameCount,
+                        mCrossfadeFromScale, mCrossfadeToScale);
+            }
+            return mFrames.createLoader(context, mFrameDuration, true, mPlaybackMode, frameCache);
+        }
+    }
+
+    /**
+     * A transition that plays the frames of another transition in reverse.
+     * <p/>
+     * It has no settings of its own. Every property comes from the transition it reverses,
+     * including changes made to that transition after it was reversed.
+     *
+     * @see TransitionBuilder#reversed()
+     * @see SectionBuilder#addTransition(String, ReversedTransition)
+     */
+    public static final class ReversedTransition {
+        private final TransitionBuilder mSource;
+
+        private ReversedTransition(TransitionBuilder source) {
+            mSource = source;
+        }
+
+        /**
+         * Returns the transition that this transition plays in reverse.
+         */
+        public TransitionBuilder getSource() {
+            return mSource;
+        }
+    }
+
+    /**
+     * A TransitionBuilder for a transition in a JSON animation. The transition is kept as JSON
+     * text, which is not parsed until the transition is first built.
+     */
+    private static class JsonTransitionBuilder extends TransitionBuilder {
+        private String mJson;
+
+        public JsonTransitionBuilder(String json) {
+            mJson = json;
+        }
+
+        @Override
+        synchronized AnimationDrawableLoader build(Context context, FrameDiskCache frameCache) {
+            if (mJson != null) {
+                try {
+                    JSONObject obj = new JSONObject(mJson);
+                    setFrameDuration(obj.optInt("frame_duration", DEFAULT_FRAME_DURATION));
+                    setPlaybackMode(playbackModeFromJson(obj));
+                    JSONObject crossfade = obj.optJSONObject("crossfade");
+                    if (crossfade != null) {
+                        setCrossfade(crossfade.getInt("frame_count"),
+                                (float) crossfade.optDouble("from_scale", 1),
+                                (float) crossfade.optDouble("to_scale", 1));
+                    } else {
+                        super.mFrames.setFromJson(context, obj);
+                    }
+                } catch (JSONException ignored) {
+                    throw new RuntimeException("Invalid sync animation JSON file format.");
+                }
+                mJson = null;
+            }
+            return super.build(context, frameCache);
         }
     }
 
@@ -313,51 +1258,149 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      */
     public static class SectionBuilder {
         private String mId;
-        private List<Integer> mFrames = new ArrayList<>();
+        private FrameSource mFrames = new FrameSource();
         private boolean mIsOneshot = DEFAULT_ONESHOT_STATUS;
         private int mFrameDuration = DEFAULT_FRAME_DURATION;
+        private PlaybackMode mPlaybackMode = PlaybackMode.FORWARD;
         private Map<String, TransitionBuilder> mTransitions = new HashMap<>();
 
         /**
          * A constructor that takes the ID of this section.
          *
-         * @param id The ID of the section
+         * @param id The ID of the section
+         */
+        public SectionBuilder(String id) {
+            mId = id;
+        }
+
+        /**
+         * Add a frame to the section animation.
+         *
+         * @param imageResource The resource id of a image drawable.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder addFrame(int imageResource) {
+            mFrames.addFrame(imageResource);
+            return this;
+        }
+
+        /**
+         * Add several frames to the section animation.
+         *
+         * @param imageResources The resource ids of image drawables, in the order they will be played.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder addFrames(int... imageResources) {
+            mFrames.addFrames(imageResources);
+            return this;
+        }
+
+        /**
+         * Add a frame whose transparent borders have been cropped off. The frame will be drawn at
+         * its original position in the full frame. The canvas size must also be set with
+         * {@link #setCanvasSize(int, int)}.
+         *
+         * @param imageResource The resource id of the cropped image drawable.
+         * @param x             The left edge of the cropped image in the full frame, in pixels.
+         * @param y             The top edge of the cropped image in the full frame, in pixels.
+         * @param width         The width of the cropped image, in pixels.
+         * @param height        The height of the cropped image, in pixels.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder addFrame(int imageResource, int x, int y, int width, int height) {
+            mFrames.addFrame(imageResource, x, y, width, height);
+            return this;
+        }
+
+        /**
+         * Set the size of the full frames of this section, before any transparent borders were cropped.
+         *
+         * @param width  The width of the full frames, in pixels.
+         * @param height The height of the full frames, in pixels.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder setCanvasSize(int width, int height) {
+            mFrames.setCanvasSize(width, height);
+            return this;
+        }
+
+        /**
+         * Set that oneshot status of this section.
+         *
+         * @param isOneshot If true, the animation for this section will pause playing on the final frame.
+         *                  If false, the animation for this section will loop until a new section is transitioned to.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder setOneshot(boolean isOneshot) {
+            mIsOneshot = isOneshot;
+            return this;
+        }
+
+        /**
+         * Set the duration that each frame in this section will play.
+         *
+         * @param frameDuration The number of milliseconds that each frame will be displayed
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder setFrameDuration(int frameDuration) {
+            mFrameDuration = frameDuration;
+            return this;
+        }
+
+        /**
+         * Play an animated image instead of a list of frames. Any frames added with addFrame will
+         * be ignored.
+         * <p/>
+         * GIFs only have 256 colors and 1-bit transparency, and Views showing them use a software
+         * layer. Use {@link #setSpriteStrip(int, int)} for frames with soft edges.
+         *
+         * @param rawResource The resource id of a raw animated GIF. Frames of the image will be
+         *                    displayed every frameDuration milliseconds.
+         * @return This Builder object to allow for chaining of calls to set methods
          */
-        public SectionBuilder(String id) {
-            mId = id;
+        public SectionBuilder setAnimatedImage(int rawResource) {
+            mFrames.setAnimatedImage(rawResource);
+            return this;
         }
 
         /**
-         * Add a frame to the section animation.
+         * Play frames from a sprite strip instead of a list of frames: a single image that holds
+         * every frame side by side, from left to right. Unlike an animated GIF, the strip can be a
+         * PNG with a full alpha channel. Any frames added with addFrame will be ignored.
          *
-         * @param imageResource The resource id of a image drawable.
+         * @param rawResource The resource id of the raw strip image. Its width must be a multiple of
+         *                    the frame count.
+         * @param frameCount  The number of frames in the strip. Each frame will be displayed for
+         *                    frameDuration milliseconds.
          * @return This Builder object to allow for chaining of calls to set methods
          */
-        public SectionBuilder addFrame(int imageResource) {
-            mFrames.add(imageResource);
+        public SectionBuilder setSpriteStrip(int rawResource, int frameCount) {
+            mFrames.setSpriteStrip(rawResource, frameCount);
             return this;
         }
 
         /**
-         * Set that oneshot status of this section.
+         * Draw frames procedurally instead of using a list of image frames. Any frames added
+         * with addFrame will be ignored.
          *
-         * @param isOneshot If true, the animation for this section will pause playing on the final frame.
-         *                  If false, the animation for this section will loop until a new section is transitioned to.
+         * @param renderer   The renderer that will draw each frame.
+         * @param frameCount The number of frames in the animation. Each frame will be displayed
+         *                   for frameDuration milliseconds.
          * @return This Builder object to allow for chaining of calls to set methods
          */
-        public SectionBuilder setOneshot(boolean isOneshot) {
-            mIsOneshot = isOneshot;
+        public SectionBuilder setRenderer(FrameRenderer renderer, int frameCount) {
+            mFrames.setRenderer(renderer, frameCount);
             return this;
         }
 
         /**
-         * Set the duration that each frame in this section will play.
+         * Set the order in which the frames of this section are played.
          *
-         * @param frameDuration The number of milliseconds that each frame will be displayed
+         * @param playbackMode The playback mode. The default is {@link PlaybackMode#FORWARD}.
          * @return This Builder object to allow for chaining of calls to set methods
          */
-        public SectionBuilder setFrameDuration(int frameDuration) {
-            mFrameDuration = frameDuration;
+        public SectionBuilder setPlaybackMode(PlaybackMode playbackMode) {
+            mPlaybackMode = playbackMode;
             return this;
         }
 
@@ -373,16 +1416,80 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
             return this;
         }
 
-        private AnimationSection build(Context context) {
-            AnimationDrawableLoader loader = new AnimationDrawableLoader(context, mFrameDuration, mIsOneshot, integerListToArray(mFrames));
-            AnimationSection section = new AnimationSection(mId, loader);
+        /**
+         * Add an animation that will play the frames of another transition in reverse when
+         * transitioning to this section.
+         *
+         * @param fromId     A section name. When a transition is queued from the named section to this one, this transition will play.
+         * @param transition The reversed transition, from {@link TransitionBuilder#reversed()}.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public SectionBuilder addTransition(String fromId, ReversedTransition transition) {
+            mTransitions.put(fromId, new TransitionBuilder(transition));
+            return this;
+        }
+
+        AnimationSection build(Context context, FrameDiskCache frameCache) {
+            AnimationDrawableLoader loader = mFrames.createLoader(context, mFrameDuration, mIsOneshot, mPlaybackMode, frameCache);
+            return new AnimationSection(mId, loader, mTransitions, context, frameCache);
+        }
+    }
+
+    /**
+     * A SectionBuilder for a section of a JSON animation. The section is kept as JSON text, and no
+     * resources are looked up, until the section is first built. Transitions are parsed when they
+     * are first played.
+     */
+    private static class JsonSectionBuilder extends SectionBuilder {
+        private String mJson;
+
+        /**
+         * The JSON of the transitions that this section's "reverse_of" transitions play in
+         * reverse, keyed by the ID of the section they transition from.
+         */
+        private Map<String, String> mReversedTransitions;
+
+        public JsonSectionBuilder(String id, String json, Map<String, String> reversedTransitions) {
+            super(id);
+            mJson = json;
+            mReversedTransitions = reversedTransitions;
+        }
 
-            for (Map.Entry<String, TransitionBuilder> entry : mTransitions.entrySet()) {
-                loader = entry.getValue().build(context);
-                section.addTransition(entry.getKey(), loader);
+        @Override
+        synchronized AnimationSection build(Context context, FrameDiskCache frameCache) {
+            if (mJson != null) {
+                try {
+                    parse(context, new JSONObject(mJson));
+                } catch (JSONException ignored) {
+                    throw new RuntimeException("Invalid sync animation JSON file format.");
+                }
+                mJson = null;
+                mReversedTransitions = null;
             }
+            return super.build(context, frameCache);
+        }
 
-            return section;
+        private void parse(Context context, JSONObject obj) throws JSONException {
+            setFrameDuration(obj.optInt("frame_duration", DEFAULT_FRAME_DURATION));
+            setOneshot(obj.optBoolean("oneshot", DEFAULT_ONESHOT_STATUS));
+            setPlaybackMode(playbackModeFromJson(obj));
+            super.mFrames.setFromJson(context, obj);
+
+            // The optional "transitions" entry is another list of objects
+            JSONObject transitions_from = obj.optJSONObject("transitions_from");
+            if (transitions_from == null) return;
+            for (Iterator<String> transition_iter = transitions_from.keys(); transition_iter.hasNext(); ) {
+                String from = transition_iter.next();
+
+                // A transition can be the reverse of a transition defined in another section,
+                // which was looked up when the animation was loaded.
+                String reversed = mReversedTransitions.get(from);
+                if (reversed != null) {
+                    addTransition(from, new JsonTransitionBuilder(reversed).reversed());
+                } else {
+                    addTransition(from, new JsonTransitionBuilder(transitions_from.getJSONObject(from).toString()));
+                }
+            }
         }
     }
 
@@ -391,7 +1498,11 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      */
     public static class Builder {
         List<SectionBuilder> mSections = new ArrayList<>();
-        View mView = null;
+        RenderTarget mTarget = null;
+        FrameDiskCache mFrameCache = null;
+        AnimationClock mClock = null;
+        ParallelFrameDecoder mFrameDecoder = null;
+        FrameRatePolicy mFrameRatePolicy = null;
 
         /**
          * Set a view to attach this animation to.
@@ -400,7 +1511,21 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
          * @param view The view that will hold the animation.
          */
         public Builder(View view) {
-            mView = view;
+            this(view == null ? null : new ViewRenderTarget(view));
+        }
+
+        private Builder(RenderTarget target) {
+            mTarget = target;
+        }
+
+        /**
+         * Create a builder for an animation that is displayed by a render target.
+         *
+         * @param target The target that will display the animation.
+         * @return A new Builder.
+         */
+        public static Builder withTarget(RenderTarget target) {
+            return new Builder(target);
         }
 
         /**
@@ -413,15 +1538,84 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
             return this;
         }
 
+        /**
+         * Load frames through a persistent disk cache. This speeds up loading frames in
+         * later processes, at the cost of storage space in the app's cache directory.
+         *
+         * @param frameCache The cache to use, or null to always decode frames from resources.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder setFrameDiskCache(FrameDiskCache frameCache) {
+            mFrameCache = frameCache;
+            return this;
+        }
+
+        /**
+         * Schedule frames with a clock instead of with the view or render target.
+         *
+         * @param clock The clock to use, or null to let the render target schedule frames.
+         * @return This Builder object to allow for chaining of calls to set methods
+         * @see MultiStateAnimation#setClock(AnimationClock)
+         */
+        public Builder setClock(AnimationClock clock) {
+            mClock = clock;
+            return this;
+        }
+
+        /**
+         * Decode the frames of each section in parallel.
+         *
+         * @param decoder The decoder to use, or null to decode frames on the calling thread.
+         * @return This Builder object to allow for chaining of calls to set methods
+         * @see MultiStateAnimation#setFrameDecoder(ParallelFrameDecoder)
+         */
+        public Builder setFrameDecoder(ParallelFrameDecoder decoder) {
+            mFrameDecoder = decoder;
+            return this;
+        }
+
+        /**
+         * Lower the frame rate of looping sections according to a policy.
+         *
+         * @param policy The policy to use, or null to play every frame.
+         * @return This Builder object to allow for chaining of calls to set methods
+         * @see MultiStateAnimation#setFrameRatePolicy(FrameRatePolicy)
+         */
+        public Builder setFrameRatePolicy(FrameRatePolicy policy) {
+            mFrameRatePolicy = policy;
+            return this;
+        }
+
         /**
          * Construct a MultiStateAnimation.
+         * <p/>
+         * Sections are not loaded until they are first played, so changes made to a
+         * SectionBuilder before then will affect the animation.
+         *
          * @param context A context used to load resources.
          * @return A new MultiStateAnimation.
          */
         public MultiStateAnimation build(Context context) {
-            MultiStateAnimation animation = new MultiStateAnimation(mView);
+            return build(context, mTarget);
+        }
+
+        /**
+         * Construct a MultiStateAnimation that displays on a different target than this builder's.
+         */
+        MultiStateAnimation build(Context context, RenderTarget target) {
+            MultiStateAnimation animation = build(context, target, mFrameCache);
+            animation.setClock(mClock);
+            animation.setFrameDecoder(mFrameDecoder);
+            animation.setFrameRatePolicy(mFrameRatePolicy);
+            return animation;
+        }
+
+        private MultiStateAnimation build(Context context, RenderTarget target, FrameDiskCache frameCache) {
+            MultiStateAnimation animation = new MultiStateAnimation(target);
+            animation.mContext = context;
+            animation.mFrameCache = frameCache;
             for (SectionBuilder section : mSections) {
-                animation.addSection(section.build(context));
+                animation.addSection(section);
             }
             return animation;
         }
@@ -473,12 +1667,40 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * <dt>"frame_duration"</dt><dd>The number of milliseconds that each frame in the "frame"
      * list will play. It defaults to 33 (30fps) if not given.</dd>
      * <dt>"frames"</dt><dd>A list of string resource ID names that must correspond to a
-     * drawable resource.</dd>
+     * drawable resource. A frame may instead be an object for an image with its transparent
+     * borders cropped off. Its "name" is the resource name, "x" and "y" are the position of the
+     * cropped image in the full frame, and "width" and "height" are its size, all in pixels.</dd>
+     * <dt>"canvas_width", "canvas_height"</dt><dd>Required if any frames are cropped. The size in
+     * pixels of the full frames before cropping.</dd>
+     * <dt>"animated_image"</dt><dd>Optional, and can be given instead of "frames". The name of a raw
+     * resource containing an animated GIF. Frames of the image will be displayed every
+     * "frame_duration" milliseconds. GIFs only have 256 colors and 1-bit transparency, and Views
+     * showing them use a software layer. Transitions may also use this key instead of "frames".</dd>
+     * <dt>"sprite_strip"</dt><dd>Optional, and can be given instead of "frames". An object with the
+     * name of a raw "image" resource that holds every frame side by side from left to right, and
+     * the "frame_count" of the strip. The image can be a PNG with a full alpha channel.
+     * Transitions may also use this key instead of "frames".</dd>
+     * <dt>"procedural"</dt><dd>Optional, and can be given instead of "frames". An object that
+     * describes frames that are drawn at runtime instead of loaded from images. The "type" key is
+     * one of "spinner" or "pulse", which take a "color" string such as "#ff33b5e5", or "rotate",
+     * which takes the name of a "drawable" resource to spin. "frame_count" is the number of frames
+     * to draw. Transitions may also use this key instead of "frames".</dd>
+     * <dt>"playback"</dt><dd>Optional. One of "forward", "reverse", or "ping_pong". The order in
+     * which frames are played. It defaults to "forward". Transitions may also use this key.</dd>
      * <dt>"transitions_from"</dt><dd>Optional, and is a set of animations that play when transitioning to
      * the current state from another given state. A transition will play when the ID of the
      * current state matches the transition's key and the state is transitioning to the state
-     * in which the transition is defined.</dd>
+     * in which the transition is defined. Instead of its own frames, a transition can give a
+     * "reverse_of" object with "from" and "to" section IDs, and will play the frames of the
+     * transition to "to" from "from" in reverse. A transition can also give a "crossfade" object
+     * instead of frames, which fades from the frame that was showing to the first frame of the
+     * section over "frame_count" frames. The optional "from_scale" and "to_scale" keys scale the
+     * outgoing frame as it fades out and the incoming frame as it fades in.</dd>
      * </dl>
+     * Each section is only parsed the first time it is played, so the cost of creating an
+     * animation doesn't depend on the number of sections. An error in the definition of a section
+     * is reported when that section is first played, except for a "reverse_of" that names a
+     * missing transition, which is reported when the resource is first loaded.
      *
      * @param context The application Context.
      * @param view    If not null, animations will be set as the background of this view.
@@ -487,9 +1709,59 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * @throws RuntimeException
      */
     public static MultiStateAnimation fromJsonResource(Context context, View view, int resid) {
+        return fromJsonResource(context, view, resid, null);
+    }
+
+    /**
+     * Creates a new MultiStateAnimation object from a json string that displays animations on a render target.
+     *
+     * @param context The application Context.
+     * @param target  If not null, animations will be displayed by this target.
+     * @param resid   The resource ID the the raw json document.
+     * @return A new MultiStateAnimation.
+     * @throws RuntimeException
+     * @see #fromJsonResource(Context, View, int)
+     */
+    public static MultiStateAnimation fromJsonResourceWithTarget(Context context, RenderTarget target, int resid) {
+        return fromJsonResourceWithTarget(context, target, resid, null);
+    }
+
+    /**
+     * Creates a new MultiStateAnimation object from a json string, loading frames through a
+     * persistent disk cache.
+     *
+     * @param context    The application Context.
+     * @param view       If not null, animations will be set as the background of this view.
+     * @param resid      The resource ID the the raw json document.
+     * @param frameCache The cache to load frames through, or null to always decode frames from resources.
+     * @return A new MultiStateAnimation.
+     * @throws RuntimeException
+     * @see #fromJsonResource(Context, View, int)
+     */
+    public static MultiStateAnimation fromJsonResource(Context context, View view, int resid, FrameDiskCache frameCache) {
+        return fromJsonResourceWithTarget(context, view == null ? null : new ViewRenderTarget(view), resid, frameCache);
+    }
+
+    /**
+     * Creates a new MultiStateAnimation object from a json string that displays animations on a
+     * render target, loading frames through a persistent disk cache.
+     *
+     * @param context    The application Context.
+     * @param target     If not null, animations will be displayed by this target.
+     * @param resid      The resource ID the the raw json document.
+     * @param frameCache The cache to load frames through, or null to always decode frames from resources.
+     * @return A new MultiStateAnimation.
+     * @throws RuntimeException
+     * @see #fromJsonResource(Context, View, int)
+     */
+    public static MultiStateAnimation fromJsonResourceWithTarget(Context context, RenderTarget target, int resid, FrameDiskCache frameCache) {
         // Use the cached builder, if one exists.
-        if (mBuilderCache.containsKey(resid)) {
-            return mBuilderCache.get(resid).build(context);
+        Builder cachedBuilder;
+        synchronized (mBuilderCache) {
+            cachedBuilder = mBuilderCache.get(resid);
+        }
+        if (cachedBuilder != null) {
+            return cachedBuilder.build(context, target, frameCache);
         }
 
         // Read the resource into a string
@@ -504,56 +1776,53 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
             throw new RuntimeException("Cannot Read JSON sync animation Resource");
         }
 
-        // Parse
-        Builder animationBuilder = new Builder(view);
+        // Parse. The cached builder doesn't hold a target, since it is shared by every animation
+        // created from this resource.
+        Builder animationBuilder = new Builder((RenderTarget) null);
         try {
             JSONObject root = new JSONObject(stringBuilder.toString());
 
-            // The root is a an object with keys that are sequence IDs
+            // The root is a an object with keys that are sequence IDs. Each section is kept as
+            // JSON text and parsed the first time it is played. Only "reverse_of" references are
+            // resolved now, so that the cached builder doesn't need to hold the whole document.
             for (Iterator<String> iter = root.keys(); iter.hasNext(); ) {
                 String sectionId = iter.next();
-                JSONObject obj = root.getJSONObject(sectionId);
-                int frameDuration = obj.optInt("frame_duration", DEFAULT_FRAME_DURATION);
-                boolean isOneShot = obj.optBoolean("oneshot", DEFAULT_ONESHOT_STATUS);
-                JSONArray frames = obj.getJSONArray("frames");
-
-                SectionBuilder sectionBuilder = new SectionBuilder(sectionId)
-                        .setFrameDuration(frameDuration)
-                        .setOneshot(isOneShot);
-
-                for (String frame : jsonArrayToArray(frames)) {
-                    sectionBuilder.addFrame(getDrawableResourceId(context, frame));
-                }
-
-                JSONObject transitions_from;
-                if (obj.has("transitions_from")) {
-                    transitions_from = obj.getJSONObject("transitions_from");
-                } else {
-                    transitions_from = new JSONObject();
-                }
-
-                // The optional "transitions" entry is another list of objects
-                for (Iterator<String> transition_iter = transitions_from.keys(); transition_iter.hasNext(); ) {
-                    String from = transition_iter.next();
-
-                    JSONObject t_obj = transitions_from.getJSONObject(from);
-                    frameDuration = t_obj.optInt("frame_duration", DEFAULT_FRAME_DURATION);
-                    frames = t_obj.getJSONArray("frames");
-                    TransitionBuilder transitionBuilder = new TransitionBuilder()
-                            .setFrameDuration(frameDuration);
-                    for (String frame : jsonArrayToArray(frames)) {
-                        transitionBuilder.addFrame(getDrawableResourceId(context, frame));
-                    }
-                    sectionBuilder.addTransition(from, transitionBuilder);
-                }
-                animationBuilder.addSection(sectionBuilder);
+                JSONObject section = root.getJSONObject(sectionId);
+                animationBuilder.addSection(new JsonSectionBuilder(sectionId, section.toString(),
+                        reversedTransitionsFromJson(root, section)));
             }
         } catch (JSONException ignored) {
             throw new RuntimeException("Invalid sync animation JSON file format.");
         }
 
-        mBuilderCache.put(resid, animationBuilder);
-        return animationBuilder.build(context);
+        synchronized (mBuilderCache) {
+            mBuilderCache.put(resid, animationBuilder);
+        }
+        return animationBuilder.build(context, target, frameCache);
+    }
+
+    /**
+     * Find the transitions that the "reverse_of" transitions of a section play in reverse.
+     *
+     * @param root    The whole JSON animation.
+     * @param section The section to find the reversed transitions of.
+     * @return The JSON of each reversed transition, keyed by the ID of the section it transitions from.
+     */
+    private static Map<String, String> reversedTransitionsFromJson(JSONObject root, JSONObject section) throws JSONException {
+        Map<String, String> reversed = new HashMap<>();
+        JSONObject transitions_from = section.optJSONObject("transitions_from");
+        if (transitions_from == null) return reversed;
+        for (Iterator<String> iter = transitions_from.keys(); iter.hasNext(); ) {
+            String from = iter.next();
+            JSONObject reverseOf = transitions_from.getJSONObject(from).optJSONObject("reverse_of");
+            if (reverseOf != null) {
+                JSONObject source = root.getJSONObject(reverseOf.getString("to"))
+                        .getJSONObject("transitions_from")
+                        .getJSONObject(reverseOf.getString("from"));
+                reversed.put(from, source.toString());
+            }
+        }
+        return reversed;
     }
 
     /**
@@ -565,16 +1834,34 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * @throws RuntimeException
      */
     public static MultiStateAnimation fromJsonResource(Context context, int resid)  {
-        return MultiStateAnimation.fromJsonResource(context, null, resid);
+        return MultiStateAnimation.fromJsonResourceWithTarget(context, null, resid);
     }
 
     /**
-     * Add an animation section to this series.
+     * Add an animation section to this series. The section will be built the first time it is played.
      *
      * @param section the section to add.
      */
-    private void addSection(AnimationSection section) {
-        mSectionsById.put(section.getId(), section);
+    private void addSection(SectionBuilder section) {
+        mSectionsById.remove(section.mId);
+        mSectionBuilders.put(section.mId, section);
+    }
+
+    /**
+     * Return the section with the given id, building it if it hasn't been played before.
+     *
+     * @return The section, or null if no section with the id was added.
+     */
+    private AnimationSection getSection(String id) {
+        AnimationSection section = mSectionsById.get(id);
+        if (section == null) {
+            SectionBuilder builder = mSectionBuilders.remove(id);
+            if (builder != null) {
+                section = builder.build(mContext, mFrameCache);
+                mSectionsById.put(id, section);
+            }
+        }
+        return section;
     }
 
     /**
@@ -588,6 +1875,10 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * Registers a listener that will be called when a running animation finishes. If the
      * animation is continuous, the listener will be called every time the last frame of the
      * animation is played.
+     * <p/>
+     * Only a weak reference to the listener is kept, so that an animation doesn't keep its
+     * listener's Activity alive. The caller must hold a reference to the listener for as long as it
+     * should be called.
      *
      * @param listener The listener to register.
      */
@@ -595,6 +1886,103 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
         this.mListener = new WeakReference<AnimationSeriesListener>(listener);
     }
 
+    /**
+     * Returns the target that displays the animations, or null if there is none.
+     */
+    public synchronized RenderTarget getRenderTarget() {
+        return mTarget;
+    }
+
+    /**
+     * Move the animation to a different render target. The current animation is removed from the
+     * old target and continues from the same frame on the new one. Built sections and loaded
+     * frames are kept, so a single instance can be reused for different Views, such as rows in a
+     * list.
+     * <p/>
+     * While no target is attached, the current animation is paused.
+     *
+     * @param target The new target, or null to detach the animation.
+     * @see MultiStateAnimationPool
+     */
+    public synchronized void setRenderTarget(RenderTarget target) {
+        if (target == mTarget) return;
+
+        mTarget = target;
+        if (mCurrentDrawable != null && mPendingStartFrame == NO_PENDING_START) {
+            mPendingStartFrame = RESUME_CURRENT_FRAME;
+        }
+        updateTarget();
+    }
+
+    /**
+     * Move the animation to the background of a different View.
+     *
+     * @param view The new view, or null to detach the animation.
+     * @see #setRenderTarget(RenderTarget)
+     */
+    public void setView(View view) {
+        setRenderTarget(view == null ? null : new ViewRenderTarget(view));
+    }
+
+    /**
+     * Returns the clock used to schedule frames, or null if frames are scheduled by the render target.
+     */
+    public synchronized AnimationClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Schedule animation frames with a clock instead of with the View or render target that
+     * displays them. With a clock set, animations will advance even if they are not attached to a
+     * View. Using a {@link VirtualAnimationClock} allows animations to be stepped deterministically.
+     * <p/>
+     * The new clock will take effect the next time an animation starts.
+     *
+     * @param clock The clock to use, or null to let the render target schedule frames.
+     */
+    public synchronized void setClock(AnimationClock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Returns the decoder used to load section frames, or null if frames are decoded on the calling thread.
+     */
+    public synchronized ParallelFrameDecoder getFrameDecoder() {
+        return mFrameDecoder;
+    }
+
+    /**
+     * Decode the frames of each section on several threads. Sections are loaded when they start
+     * playing, so this reduces the delay before a section with many large frames starts.
+     * Procedural and animated image sections are not affected.
+     *
+     * @param decoder The decoder to use, or null to decode frames on the calling thread.
+     */
+    public synchronized void setFrameDecoder(ParallelFrameDecoder decoder) {
+        mFrameDecoder = decoder;
+    }
+
+    /**
+     * Returns the policy used to lower the frame rate of looping sections, or null if every frame is played.
+     */
+    public synchronized FrameRatePolicy getFrameRatePolicy() {
+        return mFrameRatePolicy;
+    }
+
+    /**
+     * Lower the frame rate of looping sections according to a policy, such as an
+     * {@link AdaptiveFrameRatePolicy}. Frames are skipped by showing the previous frame for longer,
+     * so the duration of each loop is not changed. Transitions and oneshot sections always play
+     * every frame.
+     * <p/>
+     * The new policy will take effect the next time an animation starts.
+     *
+     * @param policy The policy to use, or null to play every frame.
+     */
+    public synchronized void setFrameRatePolicy(FrameRatePolicy policy) {
+        mFrameRatePolicy = policy;
+    }
+
     /**
      * Calculates the total duration of the current animation section, including the transition
      * if applicable. If the the animation is not a oneshot, the total will be for a single loop.
@@ -602,56 +1990,198 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * @return The total animation duration, or 0 if no animation is playing.
      */
     public int currentSectionDuration() {
-        if (mCurrentSection == null) return 0;
-        return mCurrentSection.getDuration(mTransitioningFromId);
+        AnimationSection section;
+        AnimationDrawableLoader transition;
+        synchronized (this) {
+            if (mCurrentSection == null) return 0;
+            section = mCurrentSection;
+            transition = mTransitioningFromId == null ? null : section.getTransitionLoader(mTransitioningFromId);
+        }
+        return section.getDuration(transition);
     }
 
     /**
      * Returns the currently playing animation. If no animation has played since this object was
      * created or since a call to {@link #clearAnimation()}, null is returned.
      */
-    public AnimationDrawable getCurrentDrawable() {
+    public synchronized AnimationDrawable getCurrentDrawable() {
         return mCurrentDrawable;
     }
 
     /**
      * Return the ID of the current section if one is playing, or null otherwise.
      */
-    public String getCurrentSectionId() {
+    public synchronized String getCurrentSectionId() {
         return mCurrentSection == null ? null : mCurrentSection.getId();
     }
 
+    /**
+     * Return the index of the frame showing in the current animation, or -1 if no animation is
+     * playing. Together with {@link #getCurrentSectionId()}, this can be passed to
+     * {@link #restoreState(String, int)} to show the same frame later.
+     */
+    public synchronized int getCurrentFrame() {
+        return mCurrentDrawable == null ? -1 : mCurrentDrawable.getCurrentFrameIndex();
+    }
+
     /**
      * If the currently playing animation is a transition, return the ID of the
      * section that is being transitioned from. Otherwise return null.
      */
-    public String getTransitioningFromId() {
+    public synchronized String getTransitioningFromId() {
         return mTransitioningFromId;
     }
 
     /**
-     * Play an animation drawable.
+     * Returns the frame that is showing in the current animation, or null if there is none.
+     */
+    private Drawable getCurrentFrameDrawable() {
+        if (mCurrentDrawable == null) return null;
+        int index = mCurrentDrawable.getCurrentFrameIndex();
+        return index < 0 ? null : mCurrentDrawable.getFrame(index);
+    }
+
+    /**
+     * Begin loading a new drawable. Called with the lock held, before frames are decoded without
+     * it. Changes of state made while the frames are decoded are detected by comparing the
+     * returned generation with mGeneration afterwards.
+     *
+     * @return The generation of the new drawable.
+     */
+    private int beginLoad() {
+        // The current drawable keeps playing while the next one loads, but it must not finish
+        // into the state that is being replaced.
+        if (mCurrentDrawable != null) {
+            mCurrentDrawable.setAnimationFinishedListener(null);
+        }
+        return ++mGeneration;
+    }
+
+    /**
+     * Play an animation drawable. The drawable is attached and started on the target's thread.
+     * Called with the lock held.
      *
      * @param drawable The drawable to play.
+     * @param section  The section whose frames the drawable plays, or null for a transition.
+     * @param frame    The index of the frame to start from.
      */
-    @TargetApi(16)
-    private void playDrawable(NotifyingAnimationDrawable drawable) {
+    private void playDrawable(NotifyingAnimationDrawable drawable, AnimationSection section, int frame) {
+        if (mCurrentDrawable != null && mCurrentDrawable != drawable) {
+            mCurrentDrawable.setAnimationFinishedListener(null);
+        }
         mCurrentDrawable = drawable;
+        mCurrentDrawableSection = section;
         mCurrentDrawable.setAnimationFinishedListener(this);
+        mPendingStartFrame = frame;
 
         AnimationSeriesListener listener = mListener.get();
         if (listener != null) {
             listener.onAnimationStarting();
         }
 
-        if (mView != null) {
-            if (Build.VERSION.SDK_INT >= 16) {
-                mView.setBackground(mCurrentDrawable);
-            } else {
-                mView.setBackgroundDrawable(mCurrentDrawable);
+        updateTarget();
+    }
+
+    /**
+     * Bring the drawable shown by the render target in line with mTarget and mCurrentDrawable.
+     * Called with the lock held.
+     * <p/>
+     * Drawables are only attached, started, and stopped on the thread of the target they are
+     * shown on. The actions posted here don't capture the state they were posted with; each one
+     * applies the latest state when it runs, so they may safely run in any order.
+     */
+    private void updateTarget() {
+        final RenderTarget attached = mAttachedTarget;
+        if (attached != null && attached != mTarget) {
+            // Detach from the old target on its own thread first, then attach to the new one.
+            attached.runOnRenderThread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (MultiStateAnimation.this) {
+                        if (mAttachedTarget != attached) return;
+                        if (mAttachedDrawable != null) {
+                            mAttachedDrawable.stop();
+                        }
+                        detachDrawable(attached, mAttachedDrawable);
+                        mAttachedTarget = null;
+                        updateTarget();
+                    }
+                }
+            });
+            return;
+        }
+
+        final RenderTarget target = mTarget;
+        Runnable attach = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MultiStateAnimation.this) {
+                    // A newer update is responsible for the current state.
+                    if (target != mTarget || (mAttachedTarget != null && mAttachedTarget != target)) return;
+
+                    NotifyingAnimationDrawable drawable = mCurrentDrawable;
+                    NotifyingAnimationDrawable replaced = mAttachedDrawable;
+                    boolean changed = drawable != replaced || target != mAttachedTarget;
+                    if (drawable != replaced) {
+                        // The replaced drawable must not stay scheduled on the clock, or it
+                        // could finish again into the state of the drawable replacing it.
+                        if (replaced != null) {
+                            replaced.release();
+                        }
+                        mAttachedDrawable = drawable;
+                    }
+                    if (changed && target != null) {
+                        if (drawable == null) {
+                            detachDrawable(target, replaced);
+                        } else {
+                            target.setDrawable(drawable);
+                        }
+                    }
+                    mAttachedTarget = target;
+
+                    // Without a target, a drawable that was playing on one stays paused.
+                    if (drawable == null || mPendingStartFrame == NO_PENDING_START ||
+                            target == null && mPendingStartFrame == RESUME_CURRENT_FRAME) {
+                        return;
+                    }
+                    int frame = mPendingStartFrame == RESUME_CURRENT_FRAME ?
+                            Math.max(0, drawable.getCurrentFrameIndex()) : mPendingStartFrame;
+                    mPendingStartFrame = NO_PENDING_START;
+
+                    if (drawable.isRunning()) {
+                        drawable.stop();
+                    }
+                    drawable.setClock(mClock);
+                    drawable.setFrameRatePolicy(mFrameRatePolicy);
+                    if (frame > 0) {
+                        drawable.startAt(frame);
+                    } else {
+                        drawable.start();
+                    }
+                }
             }
+        };
+        if (target == null) {
+            attach.run();
+        } else {
+            target.runOnRenderThread(attach);
+        }
+    }
+
+    /**
+     * Stop showing a drawable on a target. A View may have been handed to another animation, such
+     * as when list rows are recycled, so a view's background is only cleared if it still shows
+     * the drawable. Called on the target's thread.
+     *
+     * @param target   The target to detach from.
+     * @param drawable The drawable this animation attached to the target, or null.
+     */
+    private static void detachDrawable(RenderTarget target, Drawable drawable) {
+        if (target instanceof ViewRenderTarget) {
+            ((ViewRenderTarget) target).detachDrawable(drawable);
+        } else {
+            target.setDrawable(null);
         }
-        mCurrentDrawable.start();
     }
 
     /**
@@ -662,15 +2192,20 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * @param id The name of the section that will be queued.
      */
     public void queueTransition(String id) {
-        if (id.equals(getCurrentSectionId())) return;
-        if (mCurrentSection == null ||
-                mCurrentDrawable != null &&
-                        mCurrentDrawable.isOneShot() &&
-                        mCurrentDrawable.isFinished()) {
-            transitionNow(id);
-        } else {
-            mQueuedSectionId = id;
+        synchronized (this) {
+            if (id.equals(getCurrentSectionId())) return;
+            // A finished drawable only means the current section is over if it plays that
+            // section, and not a transition or a section that is being replaced.
+            boolean finished = mCurrentDrawable != null &&
+                    mCurrentDrawableSection == mCurrentSection &&
+                    mCurrentDrawable.isOneShot() &&
+                    mCurrentDrawable.isFinished();
+            if (mCurrentSection != null && !finished) {
+                mQueuedSectionId = id;
+                return;
+            }
         }
+        transitionNow(id);
     }
 
     /**
@@ -682,48 +2217,103 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
      * @param id The name of the section that will be played.
      */
     public void transitionNow(String id) {
-        AnimationSection newSection = mSectionsById.get(id);
-        if (newSection == null) {
-            throw new IllegalArgumentException("transitionNow called with invalid id: " + id);
-        }
-
-        // If the section has a transition from the old section, play the
-        // transition before the main animation.
-        NotifyingAnimationDrawable transition = mCurrentSection == null ?
-                newSection.getTransition("") :
-                newSection.getTransition(mCurrentSection.getId());
-        if (transition != null) {
-            mCurrentDrawable = transition;
-            mTransitioningFromId = mCurrentSection == null ? "" : mCurrentSection.getId();
-        } else {
-            mCurrentDrawable = newSection.loadDrawable();
+        AnimationSection newSection;
+        AnimationDrawableLoader transition;
+        Drawable currentFrame;
+        ParallelFrameDecoder decoder;
+        int generation;
+        synchronized (this) {
+            newSection = getSection(id);
+            if (newSection == null) {
+                throw new IllegalArgumentException("transitionNow called with invalid id: " + id);
+            }
+
+            // If the section has a transition from the old section, play the
+            // transition before the main animation.
+            String fromId = mCurrentSection == null ? "" : mCurrentSection.getId();
+            transition = newSection.getTransitionLoader(fromId);
+            currentFrame = getCurrentFrameDrawable();
+            mTransitioningFromId = transition == null ? null : fromId;
+            mCurrentSection = newSection;
+            mQueuedSectionId = null;
+            decoder = mFrameDecoder;
+            generation = beginLoad();
+        }
+
+        // Decode without holding the lock, so the render thread can keep drawing.
+        NotifyingAnimationDrawable drawable = transition == null ?
+                newSection.loadDrawable(decoder) :
+                newSection.loadTransition(transition, currentFrame, decoder);
+
+        synchronized (this) {
+            if (generation == mGeneration) {
+                playDrawable(drawable, transition == null ? newSection : null, 0);
+            }
+        }
+    }
+
+    /**
+     * Show a section at a given frame without playing any transition, such as to restore the
+     * state of a recycled instance. If the section is already playing, its loaded frames are
+     * reused. Any queued section is cleared.
+     *
+     * @param id    The name of the section that will be played.
+     * @param frame The index of the frame to start from.
+     * @see #getCurrentFrame()
+     */
+    public void restoreState(String id, int frame) {
+        AnimationSection section;
+        ParallelFrameDecoder decoder;
+        int generation;
+        synchronized (this) {
+            section = getSection(id);
+            if (section == null) {
+                throw new IllegalArgumentException("restoreState called with invalid id: " + id);
+            }
+
+            boolean reuse = mCurrentDrawable != null && section == mCurrentDrawableSection;
+            mCurrentSection = section;
             mTransitioningFromId = null;
+            mQueuedSectionId = null;
+            if (reuse) {
+                mGeneration++;
+                playDrawable(mCurrentDrawable, section, frame);
+                return;
+            }
+            decoder = mFrameDecoder;
+            generation = beginLoad();
         }
-        mCurrentSection = newSection;
-        mQueuedSectionId = null;
 
-        playDrawable(mCurrentDrawable);
+        NotifyingAnimationDrawable drawable = section.loadDrawable(decoder);
+
+        synchronized (this) {
+            if (generation == mGeneration) {
+                playDrawable(drawable, section, frame);
+            }
+        }
     }
 
     /**
      * Clear any currently playing animation. This will cause a "" transition to
      * be played before the next queued section, if one was defined.
      */
-    public void clearAnimation() {
+    public synchronized void clearAnimation() {
         if (mCurrentDrawable != null) {
-            mCurrentDrawable.stop();
-        }
-        if (mView != null) {
-            mView.setBackgroundResource(0);
+            mCurrentDrawable.setAnimationFinishedListener(null);
         }
+        mGeneration++;
         mCurrentDrawable = null;
+        mCurrentDrawableSection = null;
         mCurrentSection = null;
         mQueuedSectionId = null;
         mTransitioningFromId = null;
+        mPendingStartFrame = NO_PENDING_START;
+        updateTarget();
     }
 
     /**
-     * Callback that is run when a playing animation finishes.
+     * Callback that is run when a playing animation finishes. This is called on the thread that
+     * advances the animation, and the next animation is decoded without holding the lock.
      */
     @Override
     public void onAnimationFinished() {
@@ -731,11 +2321,39 @@ public class MultiStateAnimation implements NotifyingAnimationDrawable.OnAnimati
         if (listener != null) {
             listener.onAnimationFinished();
         }
-        if (mTransitioningFromId != null) {
-            mTransitioningFromId = null;
-            playDrawable(mCurrentSection.loadDrawable());
-        } else if (mQueuedSectionId != null) {
-            transitionNow(mQueuedSectionId);
+
+        AnimationSection section;
+        String queuedId = null;
+        ParallelFrameDecoder decoder;
+        int generation;
+        synchronized (this) {
+            if (mTransitioningFromId != null) {
+                // The transition is over, so play the section itself.
+                mTransitioningFromId = null;
+                section = mCurrentSection;
+                decoder = mFrameDecoder;
+                generation = beginLoad();
+            } else if (mQueuedSectionId != null) {
+                queuedId = mQueuedSectionId;
+                section = null;
+                decoder = null;
+                generation = 0;
+            } else {
+                return;
+            }
+        }
+
+        if (queuedId != null) {
+            transitionNow(queuedId);
+            return;
+        }
+
+        NotifyingAnimationDrawable drawable = section.loadDrawable(decoder);
+
+        synchronized (this) {
+            if (generation == mGeneration) {
+                playDrawable(drawable, section, 0);
+            }
         }
     }
 }
@@ -0,0 +1,128 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.content.Context;
+import android.view.View;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of MultiStateAnimation instances of the same animation that can be reused for different
+ * Views, such as rows in a RecyclerView or ListView.
+ * <p/>
+ * Acquire an animation when a row is bound, and release it when the row is recycled. Released
+ * instances keep their built sections and their current frames, so binding a row doesn't build a
+ * new animation. To show the same state after rebinding, save {@link MultiStateAnimation#getCurrentSectionId()}
+ * and {@link MultiStateAnimation#getCurrentFrame()} before releasing, and pass them to
+ * {@link MultiStateAnimation#restoreState(String, int)} after acquiring.
+ */
+public class MultiStateAnimationPool {
+    private final Context mContext;
+    private final int mResourceId;
+    private final MultiStateAnimation.Builder mBuilder;
+    private final int mMaxSize;
+    private final Deque<MultiStateAnimation> mPool = new ArrayDeque<>();
+
+    /**
+     * Create a pool of animations defined in a JSON resource.
+     *
+     * @param context A context used to load resources.
+     * @param resid   The resource ID of the raw json document.
+     * @param maxSize The maximum number of released animations to keep.
+     * @see MultiStateAnimation#fromJsonResource(Context, View, int)
+     */
+    public MultiStateAnimationPool(Context context, int resid, int maxSize) {
+        this(context, resid, null, maxSize);
+    }
+
+    /**
+     * Create a pool of animations created by a builder. The builder's target is ignored.
+     *
+     * @param context A context used to load resources.
+     * @param builder The builder used to create new animations.
+     * @param maxSize The maximum number of released animations to keep.
+     */
+    public MultiStateAnimationPool(Context context, MultiStateAnimation.Builder builder, int maxSize) {
+        this(context, 0, builder, maxSize);
+    }
+
+    private MultiStateAnimationPool(Context context, int resid, MultiStateAnimation.Builder builder, int maxSize) {
+        mContext = context;
+        mResourceId = resid;
+        mBuilder = builder;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Get an animation that displays on the background of a view, reusing a released
+     * animation if one is available.
+     *
+     * @param view The view that will hold the animation.
+     * @return An animation attached to the view.
+     */
+    public MultiStateAnimation acquire(View view) {
+        return acquireWithTarget(new ViewRenderTarget(view));
+    }
+
+    /**
+     * Get an animation that displays on a render target, reusing a released animation if one is
+     * available.
+     *
+     * @param target The target that will display the animation.
+     * @return An animation attached to the target.
+     */
+    public MultiStateAnimation acquireWithTarget(RenderTarget target) {
+        MultiStateAnimation animation;
+        synchronized (this) {
+            animation = mPool.pollFirst();
+        }
+        if (animation == null) {
+            animation = create();
+        }
+        animation.setRenderTarget(target);
+        return animation;
+    }
+
+    /**
+     * Detach an animation from its target and return it to the pool. The animation keeps its
+     * current section, but its listener is removed. The animation must not be used after it is
+     * released.
+     *
+     * @param animation The animation to release.
+     */
+    public void release(MultiStateAnimation animation) {
+        animation.setRenderTarget(null);
+        animation.setSeriesAnimationFinishedListener(null);
+        synchronized (this) {
+            if (mPool.size() < mMaxSize && !mPool.contains(animation)) {
+                mPool.addFirst(animation);
+                return;
+            }
+        }
+        animation.clearAnimation();
+    }
+
+    /**
+     * Returns the number of released animations waiting to be reused.
+     */
+    public synchronized int getPooledCount() {
+        return mPool.size();
+    }
+
+    /**
+     * Discard every released animation.
+     */
+    public synchronized void clear() {
+        for (MultiStateAnimation animation : mPool) {
+            animation.clearAnimation();
+        }
+        mPool.clear();
+    }
+
+    private MultiStateAnimation create() {
+        if (mBuilder != null) {
+            return mBuilder.build(mContext, null);
+        }
+        return MultiStateAnimation.fromJsonResourceWithTarget(mContext, null, mResourceId);
+    }
+}
@@ -1,6 +1,7 @@
 package com.getkeepsafe.android.multistateanimation;
 
 import android.graphics.drawable.AnimationDrawable;
+import android.os.SystemClock;
 
 import java.lang.ref.WeakReference;
 
@@ -19,7 +20,48 @@ public class NotifyingAnimationDrawable extends AnimationDrawable {
     }
 
     private boolean mFinished = false;
-    private WeakReference<OnAnimationFinishedListener> mListener = new WeakReference<OnAnimationFinishedListener>(null);
+    private volatile WeakReference<OnAnimationFinishedListener> mListener = new WeakReference<OnAnimationFinishedListener>(null);
+
+    /**
+     * The index of the most recently selected frame. Volatile so that it can be read from threads
+     * other than the one the animation runs on.
+     */
+    private volatile int mCurrentFrame = -1;
+
+    /**
+     * If not null, frames are scheduled with this clock instead of with the drawable's callback.
+     */
+    private AnimationClock mClock;
+
+    /**
+     * True while startAt is advancing to its starting frame.
+     */
+    private boolean mSeeking = false;
+
+    /**
+     * If not null, decides how many frames to advance at a time while looping.
+     */
+    private FrameRatePolicy mFrameRatePolicy;
+
+    /**
+     * The number of frames advanced at a time during the current loop.
+     */
+    private int mFrameStride = 1;
+
+    /**
+     * True while run is advancing past frames that won't be shown.
+     */
+    private boolean mSkippingFrames = false;
+
+    /**
+     * The time that the next frame is scheduled for, or -1 if no frame is scheduled.
+     */
+    private long mScheduledTime = -1;
+
+    /**
+     * True if the frames can't be drawn on a hardware accelerated Canvas.
+     */
+    private boolean mRequiresSoftwareLayer = false;
 
     /**
      * @param drawable The frames data from animation will be copied into this instance. The animation object will be unchanged.
@@ -53,6 +95,100 @@ public class NotifyingAnimationDrawable extends AnimationDrawable {
         this.mListener = new WeakReference<OnAnimationFinishedListener>(listener);
     }
 
+    /**
+     * Schedule frames with a clock instead of with this drawable's callback. This allows the
+     * animation to run without being attached to a View.
+     *
+     * @param clock The clock to use, or null to use the drawable's callback.
+     */
+    public void setClock(AnimationClock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * @return The clock used to schedule frames, or null if frames are scheduled by the callback.
+     */
+    public AnimationClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Stop the animation and disconnect it from its listener, clock, and frame rate policy. A
+     * released drawable can't call its listener again, and none of its frames stay scheduled on
+     * the clock. The drawable can be started again after new ones are set.
+     */
+    public void release() {
+        setAnimationFinishedListener(null);
+        // Stop before removing the clock, so that the pending frame is unscheduled from it.
+        stop();
+        setClock(null);
+        setFrameRatePolicy(null);
+    }
+
+    /**
+     * Lower the frame rate of a looping animation by skipping frames. The policy is consulted at
+     * the start of each loop. Skipped frames are replaced by showing the previous frame for
+     * longer, so the duration of each loop doesn't change. Oneshot animations play every frame.
+     *
+     * @param policy The policy to use, or null to play every frame.
+     */
+    public void setFrameRatePolicy(FrameRatePolicy policy) {
+        mFrameRatePolicy = policy;
+        if (policy == null) {
+            mFrameStride = 1;
+        }
+    }
+
+    /**
+     * @return The policy used to skip frames, or null if every frame is played.
+     */
+    public FrameRatePolicy getFrameRatePolicy() {
+        return mFrameRatePolicy;
+    }
+
+    /**
+     * Mark the frames of this animation as needing a software Canvas. Views that display the
+     * animation will use a software layer while it is showing.
+     */
+    void setRequiresSoftwareLayer(boolean requiresSoftwareLayer) {
+        mRequiresSoftwareLayer = requiresSoftwareLayer;
+    }
+
+    /**
+     * Returns true if the frames of this animation can't be drawn on a hardware accelerated Canvas.
+     */
+    boolean requiresSoftwareLayer() {
+        return mRequiresSoftwareLayer;
+    }
+
+    /**
+     * Start the animation from a given frame instead of the first frame.
+     * <p/>
+     * The finished listener is not called while moving to the frame, but if the frame is the last
+     * frame of a oneshot animation, the animation will be finished.
+     *
+     * @param frame The index of the frame to start from.
+     */
+    public void startAt(int frame) {
+        mSeeking = true;
+        try {
+            start();
+            int lastFrame = getNumberOfFrames() - 1;
+            for (int i = 0; i < frame && i < lastFrame; i++) {
+                run();
+            }
+        } finally {
+            mSeeking = false;
+        }
+    }
+
+    /**
+     * Returns the index of the most recently shown frame, or -1 if no frame has been shown.
+     */
+    public int getCurrentFrameIndex() {
+        return mCurrentFrame;
+    }
+
     /**
      * Indicates whether the animation has ever finished.
      */
@@ -60,12 +196,92 @@ public class NotifyingAnimationDrawable extends AnimationDrawable {
         return mFinished;
     }
 
+    @Override
+    public void run() {
+        if (mFrameRatePolicy != null && !mSeeking && mScheduledTime >= 0) {
+            mFrameRatePolicy.onFrameAdvanced(getDuration(Math.max(0, mCurrentFrame)),
+                    Math.max(0, uptimeMillis() - mScheduledTime));
+        }
+
+        // Advance past the skipped frames without showing or scheduling them.
+        int steps = mSeeking ? 1 : getStepCount(mCurrentFrame);
+        mSkippingFrames = true;
+        try {
+            for (int i = 1; i < steps; i++) {
+                super.run();
+            }
+        } finally {
+            mSkippingFrames = false;
+        }
+        super.run();
+    }
+
+    @Override
+    public void scheduleSelf(Runnable what, long when) {
+        if (what == this && mSkippingFrames) return;
+
+        // AnimationDrawable schedules the next frame relative to SystemClock. Use the
+        // durations of the frames directly so that the clock's timing is exact, and so that
+        // skipped frames are included.
+        long delay;
+        if (what == this && mCurrentFrame >= 0 && mCurrentFrame < getNumberOfFrames()) {
+            delay = 0;
+            int steps = getStepCount(mCurrentFrame);
+            for (int i = 0; i < steps; i++) {
+                delay += getDuration(mCurrentFrame + i);
+            }
+            mScheduledTime = uptimeMillis() + delay;
+        } else {
+            delay = when - SystemClock.uptimeMillis();
+        }
+
+        if (mClock == null) {
+            super.scheduleSelf(what, SystemClock.uptimeMillis() + delay);
+        } else {
+            mClock.schedule(what, this, mClock.uptimeMillis() + delay);
+        }
+    }
+
+    @Override
+    public void unscheduleSelf(Runnable what) {
+        if (what == this) {
+            mScheduledTime = -1;
+        }
+        super.unscheduleSelf(what);
+        if (mClock != null) {
+            mClock.unschedule(what, this);
+        }
+    }
+
+    /**
+     * Returns the number of frames to advance from a frame. The last frame is never skipped.
+     */
+    private int getStepCount(int frame) {
+        int lastFrame = getNumberOfFrames() - 1;
+        if (mFrameStride <= 1 || frame < 0 || frame >= lastFrame) return 1;
+        return Math.min(mFrameStride, lastFrame - frame);
+    }
+
+    private long uptimeMillis() {
+        return mClock == null ? SystemClock.uptimeMillis() : mClock.uptimeMillis();
+    }
+
     @Override
     public boolean selectDrawable(int idx) {
         boolean result = super.selectDrawable(idx);
+        mCurrentFrame = idx;
+
+        // Choose the frame rate for each loop as it starts
+        if (idx == 0 && !mSkippingFrames) {
+            mFrameStride = mFrameRatePolicy == null || isOneShot() ? 1 :
+                    Math.max(1, mFrameRatePolicy.getFrameStride(getDuration(0)));
+        }
 
         if (idx != 0 && idx == getNumberOfFrames() - 1) {
-            if (!mFinished || !isOneShot()) {
+            if (mSeeking) {
+                // A oneshot animation that starts at its last frame has finished.
+                mFinished = mFinished || isOneShot();
+            } else if (!mFinished || !isOneShot()) {
                 mFinished = true;
                 OnAnimationFinishedListener listener = mListener.get();
                 if (listener != null) {
@@ -0,0 +1,208 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes the frames of an animation section on a pool of worker threads.
+ * <p/>
+ * Without a decoder, a section's frames are decoded one at a time on the thread that starts the
+ * section. With a decoder, the calling thread and the worker threads take frames from the same
+ * queue, so the calling thread keeps decoding instead of waiting for the workers, and a section
+ * never waits on a worker that is busy with another animation. The number of frames being decoded
+ * at once is limited by both the number of threads and a limit on the memory used by the frames
+ * being decoded.
+ * <p/>
+ * A single decoder can be shared by any number of animations.
+ *
+ * @see MultiStateAnimation#setFrameDecoder(ParallelFrameDecoder)
+ */
+public class ParallelFrameDecoder {
+    /**
+     * The default limit on the memory held by frames that are being decoded at once.
+     */
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Loads a single frame. Implementations must be safe to call from multiple threads.
+     */
+    interface FrameLoader {
+        Drawable loadFrame(int index);
+    }
+
+    private final ExecutorService mExecutor;
+    private final int mThreadCount;
+    private final long mMaxInFlightBytes;
+
+    /**
+     * Create a decoder with one thread per available processor.
+     */
+    public ParallelFrameDecoder() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_IN_FLIGHT_BYTES);
+    }
+
+    /**
+     * @param threadCount      The number of worker threads.
+     * @param maxInFlightBytes The maximum number of bytes of frames that may be decoded at once.
+     */
+    public ParallelFrameDecoder(int threadCount, long maxInFlightBytes) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+        mThreadCount = threadCount;
+        mMaxInFlightBytes = maxInFlightBytes;
+        mExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private int mCount = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MultiStateAnimation decoder " + mCount++);
+                thread.setDaemon(true);
+                // Frames are usually needed by a section that is about to play, so the workers
+                // shouldn't be starved by the rest of the app.
+                thread.setPriority(Thread.NORM_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stop the worker threads. The decoder can't be used after it is shut down.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Load every frame of an animation.
+     * <p/>
+     * The first frame is loaded on the calling thread, and its size is used to decide how many
+     * frames may be decoded at once. The calling thread then decodes the remaining frames along
+     * with the worker threads, and returns once every frame is loaded.
+     *
+     * @param loader     The loader for the frames.
+     * @param frameCount The number of frames to load.
+     * @return The frames, in order.
+     */
+    Drawable[] loadFrames(FrameLoader loader, int frameCount) {
+        Drawable[] frames = new Drawable[frameCount];
+        if (frameCount == 0) return frames;
+
+        frames[0] = loader.loadFrame(0);
+        if (frameCount == 1) return frames;
+
+        // The calling thread is one of the decoding threads, so it only needs window - 1 helpers.
+        int window = Math.min(getWindowSize(frames[0]), frameCount - 1);
+        final Job job = new Job(loader, frames);
+        for (int i = 1; i < window; i++) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    job.decode();
+                }
+            });
+        }
+        job.decode();
+        job.await();
+        return frames;
+    }
+
+    /**
+     * Returns the number of frames that may be decoded at once.
+     *
+     * @param sample A decoded frame used to estimate the size of the others.
+     */
+    private int getWindowSize(Drawable sample) {
+        int threads = mThreadCount + 1;
+        long frameBytes = 0;
+        if (sample instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) sample).getBitmap();
+            if (bitmap != null) {
+                frameBytes = (long) bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        }
+        if (frameBytes <= 0) return threads;
+        return (int) Math.max(1, Math.min(threads, mMaxInFlightBytes / frameBytes));
+    }
+
+    /**
+     * The frames of a single call to loadFrames. Each decoding thread takes the next frame that
+     * hasn't been started until there are none left.
+     */
+    private static class Job {
+        private final FrameLoader mLoader;
+        private final Drawable[] mFrames;
+        private final AtomicInteger mNextFrame = new AtomicInteger(1);
+        private int mRemaining;
+
+        /**
+         * The first error thrown by a decoding thread. Errors such as OutOfMemoryError are kept
+         * too, so that the calling thread doesn't wait forever for a frame that failed.
+         */
+        private Throwable mError;
+
+        public Job(FrameLoader loader, Drawable[] frames) {
+            mLoader = loader;
+            mFrames = frames;
+            mRemaining = frames.length - 1;
+        }
+
+        /**
+         * Decode frames until none are left to start.
+         */
+        public void decode() {
+            int index;
+            while ((index = mNextFrame.getAndIncrement()) < mFrames.length) {
+                Drawable frame;
+                try {
+                    frame = mLoader.loadFrame(index);
+                } catch (RuntimeException | Error e) {
+                    fail(e);
+                    return;
+                }
+                synchronized (this) {
+                    mFrames[index] = frame;
+                    if (--mRemaining == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Wait for the frames started by other threads to finish.
+         */
+        public synchronized void await() {
+            try {
+                while (mRemaining > 0 && mError == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                mNextFrame.set(mFrames.length);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while decoding animation frames", e);
+            }
+            if (mError instanceof Error) {
+                throw (Error) mError;
+            }
+            if (mError != null) {
+                throw (RuntimeException) mError;
+            }
+        }
+
+        private synchronized void fail(Throwable e) {
+            // Stop the other threads from starting more frames.
+            mNextFrame.set(mFrames.length);
+            if (mError == null) {
+                mError = e;
+            }
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * A Drawable that draws a single frame of a procedural animation with a {@link FrameRenderer}.
+ */
+class ProceduralFrameDrawable extends Drawable {
+    private final FrameRenderer mRenderer;
+    private final float mProgress;
+    private int mAlpha = 255;
+
+    /**
+     * @param renderer The renderer that draws the frame.
+     * @param progress The position of this frame in the animation.
+     */
+    public ProceduralFrameDrawable(FrameRenderer renderer, float progress) {
+        mRenderer = renderer;
+        mProgress = progress;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (mAlpha == 0 || bounds.isEmpty()) return;
+
+        if (mAlpha < 255) {
+            int saveCount = canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom,
+                    mAlpha, Canvas.HAS_ALPHA_LAYER_SAVE_FLAG);
+            mRenderer.draw(canvas, bounds, mProgress);
+            canvas.restoreToCount(saveCount);
+        } else {
+            mRenderer.draw(canvas, bounds, mProgress);
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mAlpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        // Renderers choose their own colors.
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,30 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * A {@link FrameRenderer} that draws a filled circle that grows and fades out.
+ */
+public class PulseRenderer implements FrameRenderer {
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final int mAlpha;
+
+    /**
+     * @param color The color of the circle at the start of the pulse.
+     */
+    public PulseRenderer(int color) {
+        mPaint.setColor(color);
+        mAlpha = Color.alpha(color);
+    }
+
+    // The paint is reused for every frame.
+    @Override
+    public synchronized void draw(Canvas canvas, Rect bounds, float progress) {
+        float maxRadius = Math.min(bounds.width(), bounds.height()) / 2f;
+        mPaint.setAlpha((int) (mAlpha * (1 - progress)));
+        canvas.drawCircle(bounds.centerX(), bounds.centerY(), maxRadius * progress, mPaint);
+    }
+}
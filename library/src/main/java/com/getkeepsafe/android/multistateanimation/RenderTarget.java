@@ -0,0 +1,33 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.drawable.Drawable;
+
+/**
+ * Displays the animations played by a MultiStateAnimation.
+ * <p/>
+ * A render target is responsible for drawing the current animation and for running the frame
+ * callbacks it schedules. {@link ViewRenderTarget} draws animations as the background of a View
+ * on the UI thread, {@link SurfaceRenderTarget} draws them to a Surface from a dedicated render
+ * thread, and {@link CanvasRenderTarget} lets its owner draw them to any Canvas.
+ *
+ * @see MultiStateAnimation#withTarget(RenderTarget)
+ */
+public interface RenderTarget {
+    /**
+     * Start displaying a drawable. The drawable replaces any previously displayed drawable.
+     *
+     * @param drawable The drawable to display, or null to clear the target.
+     */
+    void setDrawable(Drawable drawable);
+
+    /**
+     * Run an action on the thread that draws this target and advances its animations. If this is
+     * called on that thread, the action is run before this method returns.
+     * <p/>
+     * MultiStateAnimation uses this to start, stop, and attach drawables, since drawables may only
+     * be used from the thread they are drawn on.
+     *
+     * @param action The action to run.
+     */
+    void runOnRenderThread(Runnable action);
+}
@@ -0,0 +1,30 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * A {@link FrameRenderer} that rotates a single drawable one full turn over the course of the
+ * animation. Using a vector drawable gives a sharp spinner at any size without any bitmap frames.
+ */
+public class RotationRenderer implements FrameRenderer {
+    private final Drawable mDrawable;
+
+    /**
+     * @param drawable The drawable to rotate. It will be drawn to fill the bounds of each frame.
+     */
+    public RotationRenderer(Drawable drawable) {
+        mDrawable = drawable;
+    }
+
+    // The drawable's bounds are set for every frame.
+    @Override
+    public synchronized void draw(Canvas canvas, Rect bounds, float progress) {
+        int saveCount = canvas.save();
+        canvas.rotate(progress * 360, bounds.exactCenterX(), bounds.exactCenterY());
+        mDrawable.setBounds(bounds);
+        mDrawable.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
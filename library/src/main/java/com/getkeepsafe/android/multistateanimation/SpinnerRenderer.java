@@ -0,0 +1,52 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * A {@link FrameRenderer} that draws a rotating arc, like an indeterminate progress spinner.
+ */
+public class SpinnerRenderer implements FrameRenderer {
+    private static final float DEFAULT_STROKE_FRACTION = 0.1f;
+    private static final float DEFAULT_SWEEP_ANGLE = 270;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mOval = new RectF();
+    private final float mStrokeFraction;
+    private final float mSweepAngle;
+
+    /**
+     * @param color The color of the arc.
+     */
+    public SpinnerRenderer(int color) {
+        this(color, DEFAULT_STROKE_FRACTION, DEFAULT_SWEEP_ANGLE);
+    }
+
+    /**
+     * @param color          The color of the arc.
+     * @param strokeFraction The width of the arc, as a fraction of the smaller dimension of the bounds.
+     * @param sweepAngle     The length of the arc, in degrees.
+     */
+    public SpinnerRenderer(int color, float strokeFraction, float sweepAngle) {
+        mStrokeFraction = strokeFraction;
+        mSweepAngle = sweepAngle;
+        mPaint.setColor(color);
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    // The paint and oval are reused for every frame.
+    @Override
+    public synchronized void draw(Canvas canvas, Rect bounds, float progress) {
+        float size = Math.min(bounds.width(), bounds.height());
+        float strokeWidth = size * mStrokeFraction;
+        float radius = (size - strokeWidth) / 2;
+
+        mPaint.setStrokeWidth(strokeWidth);
+        mOval.set(bounds.centerX() - radius, bounds.centerY() - radius,
+                bounds.centerX() + radius, bounds.centerY() + radius);
+        canvas.drawArc(mOval, progress * 360 - 90, mSweepAngle, false, mPaint);
+    }
+}
@@ -0,0 +1,307 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.TextureView;
+
+/**
+ * A {@link RenderTarget} that draws animations to a Surface from a dedicated render thread.
+ * <p/>
+ * The surface can come from a SurfaceView, a TextureView, or any other source of a Surface, such
+ * as a SurfaceTexture.
+ * <p/>
+ * Frames are advanced and drawn on the render thread, so playing an animation with this target
+ * does not compete with layout and input on the UI thread. Because frames advance on the render
+ * thread, {@link MultiStateAnimation.AnimationSeriesListener} callbacks are also called on the
+ * render thread.
+ * <p/>
+ * The animation is scaled to fill the surface. Call {@link #release()} when the target is no
+ * longer needed to stop the render thread. Animations should be moved off the target, with
+ * {@link MultiStateAnimation#setRenderTarget(RenderTarget)} or
+ * {@link MultiStateAnimation#clearAnimation()}, before it is released.
+ */
+public class SurfaceRenderTarget implements RenderTarget, Drawable.Callback {
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    private final Runnable mDrawRunnable = new Runnable() {
+        @Override
+        public void run() {
+            draw();
+        }
+    };
+
+    private volatile Drawable mDrawable;
+
+    /**
+     * Set once the render thread has been told to quit. Actions for the render thread are run on
+     * the calling thread after that, so animations can still detach from a released target.
+     */
+    private final Object mQuitLock = new Object();
+    private boolean mQuit;
+
+    /**
+     * The surface to draw to, and its size. The lock is held while drawing, so a surface is
+     * never drawn to after {@link #setSurface(Surface, int, int)} has replaced it.
+     */
+    private final Object mSurfaceLock = new Object();
+    private Surface mSurface;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+
+    /**
+     * Called when the target is released to stop listening to its SurfaceView or TextureView.
+     */
+    private Runnable mDetach;
+
+    /**
+     * Draw to a surface that is set later with {@link #setSurface(Surface, int, int)}.
+     */
+    public SurfaceRenderTarget() {
+        mThread = new HandlerThread("MultiStateAnimation render");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * @param surface The surface to draw to.
+     * @param width   The width of the surface, in pixels.
+     * @param height  The height of the surface, in pixels.
+     */
+    public SurfaceRenderTarget(Surface surface, int width, int height) {
+        this();
+        setSurface(surface, width, height);
+    }
+
+    /**
+     * @param holder The holder of the surface to draw to, such as from {@link android.view.SurfaceView#getHolder()}.
+     */
+    public SurfaceRenderTarget(final SurfaceHolder holder) {
+        this();
+        final SurfaceHolder.Callback callback = new SurfaceHolder.Callback() {
+            @Override
+            public void surfaceCreated(SurfaceHolder holder) {
+            }
+
+            @Override
+            public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+                setSurface(holder.getSurface(), width, height);
+            }
+
+            @Override
+            public void surfaceDestroyed(SurfaceHolder holder) {
+                setSurface(null, 0, 0);
+            }
+        };
+
+        Surface surface = holder.getSurface();
+        if (surface != null && surface.isValid()) {
+            setSurface(surface, holder.getSurfaceFrame().width(), holder.getSurfaceFrame().height());
+        }
+        holder.addCallback(callback);
+        mDetach = new Runnable() {
+            @Override
+            public void run() {
+                holder.removeCallback(callback);
+            }
+        };
+    }
+
+    /**
+     * Draw to the surface of a TextureView. This replaces the view's SurfaceTextureListener.
+     *
+     * @param view The view to draw to.
+     */
+    @TargetApi(14)
+    public SurfaceRenderTarget(final TextureView view) {
+        this();
+        view.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
+            private Surface mTextureSurface;
+
+            @Override
+            public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height) {
+                mTextureSurface = new Surface(texture);
+                setSurface(mTextureSurface, width, height);
+            }
+
+            @Override
+            public void onSurfaceTextureSizeChanged(SurfaceTexture texture, int width, int height) {
+                setSurface(mTextureSurface, width, height);
+            }
+
+            @Override
+            public boolean onSurfaceTextureDestroyed(SurfaceTexture texture) {
+                setSurface(null, 0, 0);
+                if (mTextureSurface != null) {
+                    mTextureSurface.release();
+                    mTextureSurface = null;
+                }
+                return true;
+            }
+
+            @Override
+            public void onSurfaceTextureUpdated(SurfaceTexture texture) {
+            }
+        });
+
+        if (view.isAvailable()) {
+            view.getSurfaceTextureListener().onSurfaceTextureAvailable(
+                    view.getSurfaceTexture(), view.getWidth(), view.getHeight());
+        }
+        mDetach = new Runnable() {
+            @Override
+            public void run() {
+                TextureView.SurfaceTextureListener listener = view.getSurfaceTextureListener();
+                if (listener != null) {
+                    listener.onSurfaceTextureDestroyed(view.getSurfaceTexture());
+                }
+                view.setSurfaceTextureListener(null);
+            }
+        };
+    }
+
+    /**
+     * Change the surface that animations are drawn to. Returns after any frame being drawn to the
+     * previous surface is finished, so it's safe to release that surface afterwards.
+     *
+     * @param surface The surface to draw to, or null to stop drawing.
+     * @param width   The width of the surface, in pixels.
+     * @param height  The height of the surface, in pixels.
+     */
+    public void setSurface(Surface surface, int width, int height) {
+        synchronized (mSurfaceLock) {
+            mSurface = surface;
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+        }
+        if (surface == null) {
+            mHandler.removeCallbacks(mDrawRunnable);
+        } else {
+            requestDraw();
+        }
+    }
+
+    @Override
+    public void setDrawable(Drawable drawable) {
+        Drawable old = mDrawable;
+        if (old != null && old != drawable) {
+            old.setCallback(null);
+            mHandler.removeCallbacksAndMessages(old);
+        }
+        mDrawable = drawable;
+        if (drawable != null) {
+            drawable.setCallback(this);
+        }
+        requestDraw();
+    }
+
+    @Override
+    public void runOnRenderThread(Runnable action) {
+        if (Looper.myLooper() != mThread.getLooper()) {
+            synchronized (mQuitLock) {
+                if (!mQuit) {
+                    mHandler.post(action);
+                    return;
+                }
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Stop the render thread and detach from the surface. The target can't be used after it is
+     * released.
+     * <p/>
+     * Actions already posted to the render thread, such as an animation detaching from the
+     * target, still run before the thread stops. Frames scheduled for later are dropped.
+     */
+    public void release() {
+        if (mDetach != null) {
+            mDetach.run();
+            mDetach = null;
+        }
+        setSurface(null, 0, 0);
+
+        runOnRenderThread(new Runnable() {
+            @Override
+            public void run() {
+                setDrawable(null);
+            }
+        });
+        synchronized (mQuitLock) {
+            if (mQuit) return;
+            mQuit = true;
+        }
+        // Every action posted before mQuit was set is ahead of this one in the queue.
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mThread.quit();
+            }
+        });
+    }
+
+    private void requestDraw() {
+        synchronized (mQuitLock) {
+            if (mQuit) return;
+        }
+        mHandler.removeCallbacks(mDrawRunnable);
+        mHandler.post(mDrawRunnable);
+    }
+
+    /**
+     * Draw the current drawable to the surface. Only called on the render thread.
+     */
+    private void draw() {
+        synchronized (mSurfaceLock) {
+            Surface surface = mSurface;
+            if (surface == null || !surface.isValid()) return;
+
+            Canvas canvas;
+            try {
+                canvas = surface.lockCanvas(null);
+            } catch (RuntimeException ignored) {
+                // The surface was destroyed or couldn't be locked. Skip this frame.
+                return;
+            }
+            if (canvas == null) return;
+            try {
+                canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+                Drawable drawable = mDrawable;
+                if (drawable != null) {
+                    drawable.setBounds(0, 0, mSurfaceWidth, mSurfaceHeight);
+                    drawable.draw(canvas);
+                }
+            } finally {
+                surface.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        if (who == mDrawable) {
+            requestDraw();
+        }
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        if (who == mDrawable) {
+            mHandler.postAtTime(what, who, when);
+        }
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        mHandler.removeCallbacks(what, who);
+    }
+}
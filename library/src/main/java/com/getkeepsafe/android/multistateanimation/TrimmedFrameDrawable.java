@@ -0,0 +1,85 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * A Drawable that draws a frame whose transparent borders were cropped off.
+ * <p/>
+ * The cropped image is drawn at its original position in the full frame, which is scaled to fit
+ * this drawable's bounds. Only the cropped area is decoded and drawn.
+ */
+class TrimmedFrameDrawable extends Drawable {
+    private final Drawable mFrame;
+    private final Rect mFrameRect;
+    private final int mCanvasWidth;
+    private final int mCanvasHeight;
+
+    /**
+     * @param frame        The cropped frame.
+     * @param frameRect    The area of the full frame that the cropped frame covers, in pixels of
+     *                     the original image.
+     * @param canvasWidth  The width of the full frame, in pixels of the original image.
+     * @param canvasHeight The height of the full frame, in pixels of the original image.
+     */
+    public TrimmedFrameDrawable(Drawable frame, Rect frameRect, int canvasWidth, int canvasHeight) {
+        mFrame = frame;
+        mFrameRect = frameRect;
+        mCanvasWidth = canvasWidth;
+        mCanvasHeight = canvasHeight;
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        float scaleX = bounds.width() / (float) mCanvasWidth;
+        float scaleY = bounds.height() / (float) mCanvasHeight;
+        mFrame.setBounds(
+                bounds.left + Math.round(mFrameRect.left * scaleX),
+                bounds.top + Math.round(mFrameRect.top * scaleY),
+                bounds.left + Math.round(mFrameRect.right * scaleX),
+                bounds.top + Math.round(mFrameRect.bottom * scaleY));
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        mFrame.draw(canvas);
+    }
+
+    /**
+     * Returns the width the full frame would have had, at the cropped frame's density.
+     */
+    @Override
+    public int getIntrinsicWidth() {
+        int width = mFrame.getIntrinsicWidth();
+        if (width < 0 || mFrameRect.width() == 0) return -1;
+        return Math.round(mCanvasWidth * width / (float) mFrameRect.width());
+    }
+
+    /**
+     * Returns the height the full frame would have had, at the cropped frame's density.
+     */
+    @Override
+    public int getIntrinsicHeight() {
+        int height = mFrame.getIntrinsicHeight();
+        if (height < 0 || mFrameRect.height() == 0) return -1;
+        return Math.round(mCanvasHeight * height / (float) mFrameRect.height());
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mFrame.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mFrame.setColorFilter(cf);
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,111 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.annotation.TargetApi;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+/**
+ * A {@link RenderTarget} that displays animations as the background of a View.
+ * <p/>
+ * Animated image sections can't be drawn on a hardware accelerated Canvas, so the View uses a
+ * software layer while one is showing. Its original layer type is restored afterwards.
+ */
+public class ViewRenderTarget implements RenderTarget {
+    /**
+     * Indicates that a view's layer type hasn't been changed.
+     */
+    static final int NO_SAVED_LAYER_TYPE = -1;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final View mView;
+    private int mSavedLayerType = NO_SAVED_LAYER_TYPE;
+
+    /**
+     * @param view The view whose background will hold the animation.
+     */
+    public ViewRenderTarget(View view) {
+        mView = view;
+    }
+
+    /**
+     * Returns the view that displays the animation.
+     */
+    public View getView() {
+        return mView;
+    }
+
+    @Override
+    public void setDrawable(Drawable drawable) {
+        mSavedLayerType = updateLayerType(mView, drawable, mSavedLayerType);
+        setBackground(mView, drawable);
+    }
+
+    /**
+     * Clear the view's background if it still shows a drawable. Another animation may have been
+     * attached to the view since, and its drawable is left alone.
+     *
+     * @param drawable The drawable to stop showing.
+     */
+    void detachDrawable(Drawable drawable) {
+        if (mView.getBackground() == drawable) {
+            setDrawable(null);
+        }
+    }
+
+    @Override
+    public void runOnRenderThread(Runnable action) {
+        runOnMainThread(action);
+    }
+
+    /**
+     * Run an action on the UI thread, immediately if this is the UI thread.
+     */
+    static void runOnMainThread(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            sMainHandler.post(action);
+        }
+    }
+
+    /**
+     * Use a software layer for a view while it displays a drawable that requires one.
+     *
+     * @param savedLayerType The layer type the view had before a software layer was set, or
+     *                       {@link #NO_SAVED_LAYER_TYPE} if its layer type hasn't been changed.
+     * @return The new saved layer type.
+     */
+    @TargetApi(11)
+    static int updateLayerType(View view, Drawable drawable, int savedLayerType) {
+        if (Build.VERSION.SDK_INT < 11) return savedLayerType;
+
+        boolean requiresSoftware = drawable instanceof NotifyingAnimationDrawable &&
+                ((NotifyingAnimationDrawable) drawable).requiresSoftwareLayer();
+        if (requiresSoftware && savedLayerType == NO_SAVED_LAYER_TYPE) {
+            savedLayerType = view.getLayerType();
+            view.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+        } else if (!requiresSoftware && savedLayerType != NO_SAVED_LAYER_TYPE) {
+            view.setLayerType(savedLayerType, null);
+            savedLayerType = NO_SAVED_LAYER_TYPE;
+        }
+        return savedLayerType;
+    }
+
+    /**
+     * Set the background of a view, or clear it if drawable is null.
+     */
+    @TargetApi(16)
+    static void setBackground(View view, Drawable drawable) {
+        if (drawable == null) {
+            view.setBackgroundResource(0);
+        } else if (Build.VERSION.SDK_INT >= 16) {
+            view.setBackground(drawable);
+        } else {
+            view.setBackgroundDrawable(drawable);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * An {@link AnimationClock} that only advances when told to.
+ * <p/>
+ * Frames scheduled with a virtual clock run synchronously from {@link #advanceBy(long)}, in the
+ * order of their scheduled times, so a sequence of sections and transitions can be played
+ * deterministically and much faster than real time. This class is not thread safe, and should
+ * only be used from the thread that drives the animation.
+ */
+public class VirtualAnimationClock implements AnimationClock {
+    private static class Task implements Comparable<Task> {
+        final Runnable what;
+        final Object token;
+        final long when;
+        final long sequence;
+
+        Task(Runnable what, Object token, long when, long sequence) {
+            this.what = what;
+            this.token = token;
+            this.when = when;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (when != other.when) return when < other.when ? -1 : 1;
+            // Tasks scheduled for the same time run in the order they were scheduled.
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+
+    private final PriorityQueue<Task> mTasks = new PriorityQueue<>();
+    private long mNow;
+    private long mSequence;
+
+    public VirtualAnimationClock() {
+        this(0);
+    }
+
+    /**
+     * @param startTime The initial time of the clock, in milliseconds.
+     */
+    public VirtualAnimationClock(long startTime) {
+        mNow = startTime;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return mNow;
+    }
+
+    @Override
+    public void schedule(Runnable what, Object token, long when) {
+        unschedule(what, token);
+        mTasks.add(new Task(what, token, when, mSequence++));
+    }
+
+    @Override
+    public void unschedule(Runnable what, Object token) {
+        for (Iterator<Task> iter = mTasks.iterator(); iter.hasNext(); ) {
+            Task task = iter.next();
+            if (task.what == what && task.token == token) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Advance the clock, running every callback scheduled up to and including the new time.
+     * Callbacks scheduled by other callbacks are also run if they fall within the interval.
+     *
+     * @param millis The number of milliseconds to advance the clock by.
+     */
+    public void advanceBy(long millis) {
+        long target = mNow + millis;
+        while (!mTasks.isEmpty() && mTasks.peek().when <= target) {
+            runNextTask();
+        }
+        mNow = target;
+    }
+
+    /**
+     * Advance the clock to the time of the next scheduled callback and run it.
+     *
+     * @return true if a callback was run, or false if no callbacks are scheduled.
+     */
+    public boolean advanceToNextFrame() {
+        if (mTasks.isEmpty()) return false;
+        runNextTask();
+        return true;
+    }
+
+    /**
+     * Returns the number of callbacks that are waiting to run.
+     */
+    public int getPendingCount() {
+        return mTasks.size();
+    }
+
+    private void runNextTask() {
+        Task task = mTasks.poll();
+        mNow = Math.max(mNow, task.when);
+        task.what.run();
+    }
+}
@@ -0,0 +1,349 @@
+package com.getkeepsafe.android.multistateanimation;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays thousands of animations through random changes of state over hours of virtual time, and
+ * fails if they leak Views, Contexts, or listeners, or leave frames scheduled.
+ * <p/>
+ * Every animation shares one {@link VirtualAnimationClock}, so the whole run is deterministic and
+ * takes seconds rather than hours. Latency and heap growth depend on the machine and the garbage
+ * collector, so they are only reported.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MultiStateAnimationSoakTest {
+    private static final long SEED = 0x5eed;
+
+    private static final int FRAME_DURATION = 100;
+    private static final int LOOP_FRAME_COUNT = 4;
+    private static final int ONCE_FRAME_COUNT = 5;
+    private static final String[] SECTION_IDS = {"loop", "once", "fade"};
+
+    /**
+     * The resource id that soak_animation.json in the test resources is read from. The Gradle
+     * plugin doesn't merge Android resources for tests, so the file is served by a Resources
+     * wrapper instead of an R.raw id. It defines the same sections as newAnimation.
+     */
+    private static final int JSON_RESID = 0x7f0f0001;
+    private static final String JSON_RESOURCE = "/soak_animation.json";
+
+    /**
+     * The number of animations playing at any time, and how often one of them is replaced by a
+     * new animation with a new View and Context.
+     */
+    private static final int LIVE_INSTANCE_COUNT = 16;
+    private static final int REPLACE_EVERY_STEPS = 2;
+
+    /**
+     * Each step makes one random change to one animation, then advances the clock by a second.
+     */
+    private static final long STEP_DURATION = 1000;
+    private static final int STEP_COUNT = (int) (2 * 60 * 60 * 1000 / STEP_DURATION);
+    private static final int WARMUP_STEPS = STEP_COUNT / 10;
+    private static final int MIN_INSTANCE_COUNT = 3000;
+
+    /**
+     * Robolectric may still hold the last few Views it laid out, so a handful of survivors is not
+     * a leak. A leak of every replaced animation would retain thousands.
+     */
+    private static final int MAX_RETAINED = 5;
+
+    private static class Instance {
+        final Context context;
+        final View view;
+        final MultiStateAnimation animation;
+        final CountingListener listener = new CountingListener();
+
+        Instance(Context context, View view, MultiStateAnimation animation) {
+            this.context = context;
+            this.view = view;
+            this.animation = animation;
+            animation.setSeriesAnimationFinishedListener(listener);
+        }
+    }
+
+    private static class CountingListener implements MultiStateAnimation.AnimationSeriesListener {
+        int finished;
+        int starting;
+
+        @Override
+        public void onAnimationFinished() {
+            finished++;
+        }
+
+        @Override
+        public void onAnimationStarting() {
+            starting++;
+        }
+    }
+
+    /**
+     * A looping section, a oneshot section with a transition from it, and a section that
+     * crossfades from the oneshot section and plays that transition in reverse from the loop.
+     */
+    private static MultiStateAnimation newAnimation(Context context, View view, AnimationClock clock) {
+        MultiStateAnimation.TransitionBuilder loopToOnce = new MultiStateAnimation.TransitionBuilder()
+                .setFrameDuration(FRAME_DURATION)
+                .setRenderer(new PulseRenderer(Color.RED), 3);
+        return new MultiStateAnimation.Builder(view)
+                .setClock(clock)
+                .addSection(new MultiStateAnimation.SectionBuilder("loop")
+                        .setOneshot(false)
+                        .setFrameDuration(FRAME_DURATION)
+                        .setRenderer(new SpinnerRenderer(Color.BLUE), LOOP_FRAME_COUNT))
+                .addSection(new MultiStateAnimation.SectionBuilder("once")
+                        .setFrameDuration(FRAME_DURATION)
+                        .setRenderer(new SpinnerRenderer(Color.GREEN), ONCE_FRAME_COUNT)
+                        .addTransition("loop", loopToOnce))
+                .addSection(new MultiStateAnimation.SectionBuilder("fade")
+                        .setFrameDuration(FRAME_DURATION)
+                        .setRenderer(new PulseRenderer(Color.BLACK), 3)
+                        .addTransition("once", new MultiStateAnimation.TransitionBuilder()
+                                .setFrameDuration(FRAME_DURATION)
+                                .setCrossfade(4, 0.5f, 1.5f))
+                        .addTransition("loop", loopToOnce.reversed()))
+                .build(context);
+    }
+
+    private static Instance newInstance(AnimationClock clock) {
+        Context context = new ContextWrapper(RuntimeEnvironment.application);
+        View view = new View(context);
+        return new Instance(context, view, newAnimation(context, view, clock));
+    }
+
+    /**
+     * Load an animation through fromJsonResource with a new Context and View. Every call after
+     * the first builds from the cached builder, which must not hold on to either of them.
+     */
+    private static Instance newJsonInstance(AnimationClock clock, Resources resources) {
+        Context context = new JsonResourceContext(RuntimeEnvironment.application, resources);
+        View view = new View(context);
+        MultiStateAnimation animation = MultiStateAnimation.fromJsonResource(context, view, JSON_RESID);
+        animation.setClock(clock);
+        return new Instance(context, view, animation);
+    }
+
+    /**
+     * Every other animation is loaded from JSON, so the retention check covers both ways of
+     * creating one.
+     */
+    private static Instance newSoakInstance(AnimationClock clock, Resources jsonResources, int created) {
+        return created % 2 == 0 ? newInstance(clock) : newJsonInstance(clock, jsonResources);
+    }
+
+    /**
+     * Returns Resources that read {@link #JSON_RESID} from the test resources.
+     */
+    private static Resources newJsonResources() {
+        Resources base = RuntimeEnvironment.application.getResources();
+        return new Resources(base.getAssets(), base.getDisplayMetrics(), base.getConfiguration()) {
+            @Override
+            public InputStream openRawResource(int id) {
+                if (id == JSON_RESID) {
+                    return MultiStateAnimationSoakTest.class.getResourceAsStream(JSON_RESOURCE);
+                }
+                return super.openRawResource(id);
+            }
+        };
+    }
+
+    private static class JsonResourceContext extends ContextWrapper {
+        final Resources resources;
+
+        JsonResourceContext(Context base, Resources resources) {
+            super(base);
+            this.resources = resources;
+        }
+
+        @Override
+        public Resources getResources() {
+            return resources;
+        }
+    }
+
+    @Test
+    public void virtualClockStepsFramesExactly() {
+        VirtualAnimationClock clock = new VirtualAnimationClock();
+        Instance instance = newInstance(clock);
+        MultiStateAnimation animation = instance.animation;
+        CountingListener listener = instance.listener;
+
+        animation.transitionNow("once");
+        assertEquals(1, listener.starting);
+        assertEquals(0, animation.getCurrentFrame());
+        assertSame(animation.getCurrentDrawable(), instance.view.getBackground());
+
+        // Each frame is shown exactly when its predecessor's duration has passed.
+        for (int frame = 1; frame < ONCE_FRAME_COUNT; frame++) {
+            clock.advanceBy(FRAME_DURATION - 1);
+            assertEquals(frame - 1, animation.getCurrentFrame());
+            clock.advanceBy(1);
+            assertEquals(frame, animation.getCurrentFrame());
+        }
+        assertEquals(1, listener.finished);
+        assertEquals(0, clock.getPendingCount());
+
+        // A oneshot section that has finished starts a queued section immediately.
+        animation.queueTransition("loop");
+        assertEquals("loop", animation.getCurrentSectionId());
+        for (int step = 1; step <= 10 * LOOP_FRAME_COUNT; step++) {
+            clock.advanceBy(FRAME_DURATION);
+            assertEquals(step % LOOP_FRAME_COUNT, animation.getCurrentFrame());
+            assertEquals(1, clock.getPendingCount());
+        }
+
+        // The transition plays first, then the section it leads to.
+        animation.transitionNow("once");
+        assertEquals("loop", animation.getTransitioningFromId());
+        clock.advanceBy(3 * FRAME_DURATION);
+        assertEquals("once", animation.getCurrentSectionId());
+        assertNull(animation.getTransitioningFromId());
+        assertSame(animation.getCurrentDrawable(), instance.view.getBackground());
+
+        animation.clearAnimation();
+        assertNull(instance.view.getBackground());
+        assertEquals(0, clock.getPendingCount());
+    }
+
+    @Test
+    public void soakRandomTransitions() {
+        Random random = new Random(SEED);
+        VirtualAnimationClock clock = new VirtualAnimationClock();
+        List<Instance> live = new ArrayList<>();
+        List<WeakReference<Object>> retired = new ArrayList<>();
+        long[] operationNanos = new long[STEP_COUNT];
+        long[] advanceNanos = new long[STEP_COUNT];
+        Resources jsonResources = newJsonResources();
+        int created = 0;
+
+        for (int i = 0; i < LIVE_INSTANCE_COUNT; i++) {
+            live.add(newSoakInstance(clock, jsonResources, created));
+            created++;
+        }
+
+        long baselineHeap = 0;
+        for (int step = 0; step < STEP_COUNT; step++) {
+            if (step % REPLACE_EVERY_STEPS == 0) {
+                int index = random.nextInt(live.size());
+                retire(live.get(index), retired);
+                live.set(index, newSoakInstance(clock, jsonResources, created));
+                created++;
+            }
+
+            Instance instance = live.get(random.nextInt(live.size()));
+            String id = SECTION_IDS[random.nextInt(SECTION_IDS.length)];
+            long start = System.nanoTime();
+            int operation = random.nextInt(10);
+            if (operation < 4) {
+                instance.animation.queueTransition(id);
+            } else if (operation < 7) {
+                instance.animation.transitionNow(id);
+            } else if (operation < 9) {
+                instance.animation.restoreState(id, random.nextInt(3));
+            } else {
+                instance.animation.clearAnimation();
+            }
+            operationNanos[step] = System.nanoTime() - start;
+            assertSame(instance.animation.getCurrentDrawable(), instance.view.getBackground());
+
+            start = System.nanoTime();
+            clock.advanceBy(STEP_DURATION);
+            advanceNanos[step] = System.nanoTime() - start;
+
+            // Each animation only ever has its current drawable scheduled.
+            assertTrue("Frames left scheduled: " + clock.getPendingCount(),
+                    clock.getPendingCount() <= LIVE_INSTANCE_COUNT);
+
+            if (step == WARMUP_STEPS) {
+                baselineHeap = usedHeapAfterGc();
+            }
+        }
+
+        long heapGrowth = usedHeapAfterGc() - baselineHeap;
+        System.out.println("Soak: heap grew by " + heapGrowth + " bytes after warmup");
+        assertTrue("Only created " + created + " animations", created >= MIN_INSTANCE_COUNT);
+
+        for (Instance instance : live) {
+            retire(instance, retired);
+        }
+        live.clear();
+        assertEquals(0, clock.getPendingCount());
+
+        usedHeapAfterGc();
+        int retained = 0;
+        for (WeakReference<Object> ref : retired) {
+            if (ref.get() != null) retained++;
+        }
+        assertTrue("Retained " + retained + " of " + retired.size() + " Views, Contexts, and listeners",
+                retained <= MAX_RETAINED);
+
+        reportLatency("operation", operationNanos);
+        reportLatency("frame step", advanceNanos);
+    }
+
+    private static void retire(Instance instance, List<WeakReference<Object>> retired) {
+        instance.animation.clearAnimation();
+        assertNull(instance.view.getBackground());
+        retired.add(new WeakReference<Object>(instance.view));
+        retired.add(new WeakReference<Object>(instance.context));
+        retired.add(new WeakReference<Object>(instance.listener));
+    }
+
+    private static void reportLatency(String name, long[] nanos) {
+        long[] all = Arrays.copyOfRange(nanos, WARMUP_STEPS, nanos.length);
+
+        // Work that grows with the number of animations played, such as callbacks that are
+        // never removed from the clock, shows up as a slower end of the run.
+        int quarter = all.length / 4;
+        long early = percentile(Arrays.copyOfRange(all, 0, quarter), 99);
+        long late = percentile(Arrays.copyOfRange(all, all.length - quarter, all.length), 99);
+        System.out.println("Soak: " + name + " p50 " + percentile(all, 50) + "ns, p99 " +
+                percentile(all, 99) + "ns, p99 of first and last quarter " + early + "ns and " +
+                late + "ns");
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    /**
+     * Returns the heap in use after collecting garbage. A weak reference to a new object is
+     * used to tell when a collection has actually run.
+     */
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            WeakReference<Object> sentinel = new WeakReference<>(new Object());
+            for (int attempt = 0; attempt < 20 && sentinel.get() != null; attempt++) {
+                System.gc();
+                System.runFinalization();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
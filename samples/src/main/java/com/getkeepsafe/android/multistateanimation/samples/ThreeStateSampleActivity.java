@@ -72,8 +72,22 @@ public class ThreeStateSampleActivity extends Activity implements MultiStateAnim
     }
 
     private MultiStateAnimation makeAnimation2(View view) {
+        // Eases from the pending frame into the loading loop. Played in reverse, it rewinds
+        // from the loop back to the pending frame, like the JSON animation's "reverse_of".
+        MultiStateAnimation.TransitionBuilder startTransition = new MultiStateAnimation.TransitionBuilder()
+                .setFrameDuration(33)
+                .addFrames(R.drawable.pending_animation_001,
+                        R.drawable.pending_animation_002,
+                        R.drawable.pending_animation_003,
+                        R.drawable.pending_animation_004,
+                        R.drawable.pending_animation_005,
+                        R.drawable.pending_animation_006,
+                        R.drawable.pending_animation_007,
+                        R.drawable.pending_animation_008);
+
         MultiStateAnimation.SectionBuilder startSection = new MultiStateAnimation.SectionBuilder("pending")
                 .setOneshot(true)
+                .addTransition("loading", startTransition.reversed())
                 .addFrame(R.drawable.pending_animation_000);
 
         MultiStateAnimation.TransitionBuilder endTransition = new MultiStateAnimation.TransitionBuilder()
@@ -95,6 +109,7 @@ public class ThreeStateSampleActivity extends Activity implements MultiStateAnim
         MultiStateAnimation.SectionBuilder loadingSection = new MultiStateAnimation.SectionBuilder("loading")
                 .setOneshot(false)
                 .setFrameDuration(33)
+                .addTransition("pending", startTransition)
                 .addFrame(R.drawable.pending_animation_001)
                 .addFrame(R.drawable.pending_animation_002)
                 .addFrame(R.drawable.pending_animation_003)
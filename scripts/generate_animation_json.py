@@ -25,6 +25,47 @@ def answer_to_bool(answer):
     elif any(w.startswith(a) for w in ('no', 'false', '0')):
         return False
 
+def trim_frames(path, frames, output_dir):
+    """Crop the transparent borders from each frame in a directory.
+
+    The cropped images are saved to output_dir with the same file names. Returns the
+    frame objects for the spec and the size of the original frames.
+    """
+    try:
+        from PIL import Image
+    except ImportError:
+        print('ERROR: trimming frames requires Pillow (pip install Pillow)')
+        sys.exit(1)
+
+    output_dir.mkdir(parents=True, exist_ok=True)
+    canvas_size = None
+    trimmed = []
+    for frame in frames:
+        image = Image.open(str(frame)).convert('RGBA')
+        if canvas_size is None:
+            canvas_size = image.size
+        elif image.size != canvas_size:
+            print('ERROR: frame %s is not the same size as the other frames in %s' % (frame.name, path))
+            sys.exit(1)
+
+        # A fully transparent frame is cropped to a single pixel
+        box = image.getchannel('A').getbbox() or (0, 0, 1, 1)
+        image.crop(box).save(str(output_dir / (frame.stem + '.png')))
+        trimmed.append(collections.OrderedDict([
+            ('name', frame.stem),
+            ('x', box[0]),
+            ('y', box[1]),
+            ('width', box[2] - box[0]),
+            ('height', box[3] - box[1])
+        ]))
+    return trimmed, canvas_size
+
+def set_frames(spec, frames, canvas_size):
+    """Set the frames of a section or transition spec."""
+    if canvas_size is not None:
+        spec['canvas_width'], spec['canvas_height'] = canvas_size
+    spec['frames'] = frames
+
 def get_answer(question, allow_empty=False):
     """Ask the user a question until they enter input."""
     ans = ''
@@ -53,6 +94,11 @@ def main():
                         '(16 = 60fps, 33 = 30fps) [default: %(default)s]')
     parser.add_argument('-o', '--output', metavar='FILE', type=pathlib.Path,
                         help='If given, write output to %(metavar)s isntead of stdout.')
+    parser.add_argument('-t', '--trim', metavar='DIR', type=pathlib.Path,
+                        help='If given, crop the transparent borders from every frame '
+                        'and save the cropped images as PNGs in %(metavar)s. The '
+                        'position of each cropped frame is saved in the output. '
+                        'Requires Pillow.')
 
     args = parser.parse_args()
 
@@ -66,13 +112,18 @@ def main():
         print('Working on directory %s...' % path)
 
         # The frames are the file names in the directory without path or extenstions
-        frames = [f.stem for f in path.iterdir() if f.suffix in VALID_EXTENSITONS]
+        files = sorted(f for f in path.iterdir() if f.suffix in VALID_EXTENSITONS)
+        frames = [f.stem for f in files]
         for frame in frames:
             if re.search(r'^\w+$', frame) is None:
                 print('ERROR: filename %s is not valid. Filenames must consist '
                       'only of letters, numbers and underscores' % frame)
                 sys.exit(1)
 
+        canvas_size = None
+        if args.trim:
+            frames, canvas_size = trim_frames(path, files, args.trim)
+
         if len(frames) > 1:
             if answer_to_bool(get_answer('Are these frames a transition [y/n]?')):
                 from_id = get_answer(
@@ -80,10 +131,9 @@ def main():
                     '(leave empty for initial transition)?', allow_empty=True)
                 section_id = get_answer('What is the ID that these frames are a transition TO?')
                 # Create the section if it doesn't exist yet.
-                spec[section_id].setdefault('transitions_from', {})[from_id] = {
-                    'frame_duration': args.frame_duration,
-                    'frames': frames
-                }
+                transition = {'frame_duration': args.frame_duration}
+                set_frames(transition, frames, canvas_size)
+                spec[section_id].setdefault('transitions_from', {})[from_id] = transition
                 print()
                 continue
             
@@ -97,7 +147,7 @@ def main():
             oneshot = answer_to_bool(get_answer('Is this section a oneshot [y/n]?'))
 
         spec[section_id]['oneshot'] = oneshot
-        spec[section_id]['frames'] = frames
+        set_frames(spec[section_id], frames, canvas_size)
 
         print()
 